@@ -2,12 +2,19 @@ package org.solovyev.android.games.game2048;
 
 import android.app.Application;
 import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
 import android.os.Handler;
 import android.widget.Toast;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.solovyev.android.Threads;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import static android.preference.PreferenceManager.getDefaultSharedPreferences;
 
@@ -32,21 +39,49 @@ public final class App {
 	private Handler uiHandler;
 
 	@Nonnull
-	private Game game;
+	private WriteBehind writeBehind;
 
 	@Nonnull
+	private MoveJournal journal;
+
+	// loaded in background, see init0()
+	@Nonnull
+	private Future<Game> game;
+
+	// loaded on demand, guarded by this
+	@Nullable
 	private HighScores highScores;
 
 	private App() {
 	}
 
 	private void init0(@Nonnull Application application) {
+		StartupTrace.start();
 		this.application = application;
+		Game.setVerifyGameOver((application.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0);
 		this.preferences = getDefaultSharedPreferences(application);
 		GamePreferences.applyDefaultValues(this.preferences);
 		this.uiHandler = Threads.newUiHandler();
-		this.game = Game.newFromSave(this.preferences);
-		this.highScores = HighScores.newFromPreferences(this.preferences);
+		this.writeBehind = WriteBehind.newWriteBehind(new WriteBehind.Listener() {
+			@Override
+			public void onError(@Nonnull File file, @Nonnull Exception e) {
+				Saves.onSaveLoadException(e, R.string.unable_to_save_game);
+			}
+		});
+		this.journal = Saves.newMoveJournal(application.getFilesDir(), writeBehind);
+
+		// nothing is drawn until the game is needed, see getGame()
+		final FutureTask<Game> game = new FutureTask<Game>(new Callable<Game>() {
+			@Override
+			public Game call() {
+				final Game game = Saves.newGameFromSave(journal, writeBehind, preferences);
+				StartupTrace.mark("game loaded");
+				return game;
+			}
+		});
+		this.game = game;
+		new Thread(game, "load-game").start();
+		StartupTrace.mark("application initialized");
 	}
 
 	public static void showToast(final int textResId) {
@@ -104,13 +139,45 @@ public final class App {
 		return instance.uiHandler;
 	}
 
+	@Nonnull
+	public static WriteBehind getWriteBehind() {
+		return instance.writeBehind;
+	}
+
+	/**
+	 * @return journal of {@link #getGame()}, must be used under the same lock as the game
+	 */
+	@Nonnull
+	public static MoveJournal getJournal() {
+		return instance.journal;
+	}
+
+	/**
+	 * Waits for the game to be loaded if needed
+	 */
 	@Nonnull
 	public static Game getGame() {
-		return instance.game;
+		try {
+			return Uninterruptibles.getUninterruptibly(instance.game);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
 	}
 
+	/**
+	 * Loads high scores on the first call
+	 */
 	@Nonnull
 	public static HighScores getHighScores() {
-		return instance.highScores;
+		return instance.getHighScores0();
+	}
+
+	@Nonnull
+	private synchronized HighScores getHighScores0() {
+		if (highScores == null) {
+			highScores = Saves.newHighScoresFromSave(application.getFilesDir(), preferences);
+			StartupTrace.mark("high scores loaded");
+		}
+		return highScores;
 	}
 }
@@ -0,0 +1,138 @@
+package org.solovyev.android.games.game2048;
+
+import android.util.Log;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static java.lang.Math.max;
+
+/**
+ * Demo mode: moves are chosen by {@link Expectimax} and made at the given speed. Slow games are animated as if the
+ * moves were made by the user, their moves are searched by {@link HintEngine} in background (see
+ * {@link #pollMove(Game, int)}). Faster ones are played in batches without animations and only the moves' results are
+ * evaluated (see {@link GameActivity}).
+ */
+final class Autoplay {
+
+	// moves per second which can still be animated
+	static final int MAX_ANIMATED_SPEED = 4;
+
+	@Nonnull
+	private final Expectimax expectimax = Expectimax.newExpectimax(HeuristicEvaluator.getInstance());
+
+	@Nonnull
+	private final HintEngine hintEngine;
+
+	// moves per second
+	private final int speed;
+
+	// time not yet spent on moves
+	private float seconds;
+
+	// search of the move of the animated game, guarded by this
+	@Nullable
+	private Future<Direction> search;
+	private long searchedHash;
+	private boolean moveDue;
+	private boolean stopped;
+
+	private Autoplay(int speed, @Nonnull HintEngine hintEngine) {
+		this.speed = speed;
+		this.hintEngine = hintEngine;
+	}
+
+	/**
+	 * @param hintEngine searches for the moves of the animated game, must not be used for hints meanwhile
+	 */
+	@Nonnull
+	static Autoplay newAutoplay(int speed, @Nonnull HintEngine hintEngine) {
+		return new Autoplay(max(1, speed), hintEngine);
+	}
+
+	boolean isAnimated() {
+		return speed <= MAX_ANIMATED_SPEED;
+	}
+
+	/**
+	 * @return number of moves to be made after <var>secondsElapsed</var>
+	 */
+	int getTurns(float secondsElapsed) {
+		seconds += secondsElapsed;
+		int turns = (int) (seconds * speed);
+		seconds -= (float) turns / speed;
+
+		// a slow device doesn't catch up: at most 0.1 s of moves is made at once
+		final int maxTurns = max(1, speed / 10);
+		if (turns > maxTurns) {
+			turns = maxTurns;
+			seconds = 0;
+		}
+		return turns;
+	}
+
+	/**
+	 * @return move to be made in <var>game</var> or null if the game is over
+	 */
+	@Nullable
+	Direction findMove(@Nonnull Game game) {
+		return expectimax.findBestMove(game, 0);
+	}
+
+	/**
+	 * Non-blocking version of {@link #findMove(Game)} for the animated game: the search is started in background for
+	 * the current position of <var>game</var> and its result is returned by one of the next calls. Must be called while
+	 * the game is not modified.
+	 *
+	 * @param turns number of moves due, see {@link #getTurns(float)}
+	 * @return move to be made in <var>game</var> now, null if no move is due or the search is not finished yet
+	 */
+	@Nullable
+	synchronized Direction pollMove(@Nonnull Game game, int turns) {
+		if (stopped) {
+			return null;
+		}
+		moveDue |= turns > 0;
+
+		final long hash = game.getBoard().getHash();
+		if (search != null && searchedHash != hash) {
+			// position has changed, e.g. the game was restarted
+			search.cancel(true);
+			search = null;
+		}
+		if (search == null) {
+			search = hintEngine.findBestMove(game);
+			searchedHash = hash;
+			return null;
+		}
+		if (!moveDue || !search.isDone()) {
+			return null;
+		}
+
+		final Future<Direction> done = search;
+		search = null;
+		moveDue = false;
+		try {
+			return done.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			Log.e(App.TAG, e.getMessage(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Cancels the search started by {@link #pollMove(Game, int)}, no moves are returned after this call
+	 */
+	synchronized void stop() {
+		stopped = true;
+		if (search != null) {
+			search.cancel(true);
+			search = null;
+		}
+	}
+}
@@ -11,6 +11,7 @@ import android.util.DisplayMetrics;
 import android.util.SparseArray;
 import android.view.*;
 import org.andengine.engine.camera.Camera;
+import org.andengine.engine.handler.IUpdateHandler;
 import org.andengine.engine.options.EngineOptions;
 import org.andengine.engine.options.resolutionpolicy.RatioResolutionPolicy;
 import org.andengine.entity.Entity;
@@ -45,6 +46,8 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.lang.Math.max;
 import static java.lang.Math.min;
@@ -56,6 +59,9 @@ import static org.solovyev.android.games.game2048.CellStyle.newCellStyle;
 
 public class GameActivity extends SimpleBaseGameActivity {
 
+	// hints are searched while the user thinks about the move
+	private static final long HINTS_BUDGET_NANOS = TimeUnit.SECONDS.toNanos(1);
+
 	@Nonnull
 	private final SparseArray<CellStyle> cellStyles = new SparseArray<CellStyle>();
 
@@ -63,19 +69,20 @@ public class GameActivity extends SimpleBaseGameActivity {
 	private final CellStyle lastCellStyle = newCellStyle(2048, R.color.cell_text_2048, R.color.cell_bg_2048);
 
 	{
+		// cell styles are indexed by exponent of 2
 		cellStyles.append(-1, newCellStyle(0, R.color.cell_wall_text, R.color.cell_wall_bg));
 		cellStyles.append(0, newCellStyle(0, R.color.cell_text, R.color.cell_bg));
-		cellStyles.append(2, newCellStyle(2, R.color.cell_text_2, R.color.cell_bg_2));
-		cellStyles.append(4, newCellStyle(4, R.color.cell_text_4, R.color.cell_bg_4));
-		cellStyles.append(8, newCellStyle(8, R.color.cell_text_8, R.color.cell_bg_8));
-		cellStyles.append(16, newCellStyle(16, R.color.cell_text_16, R.color.cell_bg_16));
-		cellStyles.append(32, newCellStyle(32, R.color.cell_text_32, R.color.cell_bg_32));
-		cellStyles.append(64, newCellStyle(64, R.color.cell_text_64, R.color.cell_bg_64));
-		cellStyles.append(128, newCellStyle(128, R.color.cell_text_128, R.color.cell_bg_128));
-		cellStyles.append(256, newCellStyle(256, R.color.cell_text_256, R.color.cell_bg_256));
-		cellStyles.append(512, newCellStyle(512, R.color.cell_text_512, R.color.cell_bg_512));
-		cellStyles.append(1024, newCellStyle(1024, R.color.cell_text_1024, R.color.cell_bg_1024));
-		cellStyles.append(2048, lastCellStyle);
+		cellStyles.append(1, newCellStyle(2, R.color.cell_text_2, R.color.cell_bg_2));
+		cellStyles.append(2, newCellStyle(4, R.color.cell_text_4, R.color.cell_bg_4));
+		cellStyles.append(3, newCellStyle(8, R.color.cell_text_8, R.color.cell_bg_8));
+		cellStyles.append(4, newCellStyle(16, R.color.cell_text_16, R.color.cell_bg_16));
+		cellStyles.append(5, newCellStyle(32, R.color.cell_text_32, R.color.cell_bg_32));
+		cellStyles.append(6, newCellStyle(64, R.color.cell_text_64, R.color.cell_bg_64));
+		cellStyles.append(7, newCellStyle(128, R.color.cell_text_128, R.color.cell_bg_128));
+		cellStyles.append(8, newCellStyle(256, R.color.cell_text_256, R.color.cell_bg_256));
+		cellStyles.append(9, newCellStyle(512, R.color.cell_text_512, R.color.cell_bg_512));
+		cellStyles.append(10, newCellStyle(1024, R.color.cell_text_1024, R.color.cell_bg_1024));
+		cellStyles.append(11, lastCellStyle);
 	}
 
 	@Nonnull
@@ -105,6 +112,14 @@ public class GameActivity extends SimpleBaseGameActivity {
 	private Scene scene;
 	private Text scoreText;
 
+	private IEntity boardView;
+
+	// views of the cells with values, indexed as board cells
+	private IEntity[] cellViews;
+
+	// positions of the cells' views, indexed as board cells
+	private Point[] cellPositions;
+
 	@Nonnull
 	private Game game;
 
@@ -112,10 +127,28 @@ public class GameActivity extends SimpleBaseGameActivity {
 	private final Object gameLock = new Object();
 
 	@Nonnull
-	private final HighScores highScores = App.getHighScores();
+	private final Moves moves = Moves.newMoves();
+
+	// moves in all the directions, computed in background when a new turn is prepared
+	@Nonnull
+	private final MoveOutcomes outcomes = MoveOutcomes.newMoveOutcomes();
 
 	private IEntity gameOverView;
 
+	// null if the user plays
+	@Nullable
+	private volatile Autoplay autoplay;
+
+	@Nonnull
+	private final HintEngine hintEngine = HintEngine.newHintEngine();
+
+	// hints of the previous positions are ignored
+	@Nonnull
+	private final AtomicInteger hintsId = new AtomicInteger();
+
+	// bar along the side of the board to move to
+	private IEntity hintView;
+
 	@Override
 	protected void onCreateResources() {
 		for (int i = 0; i < cellStyles.size(); i++) {
@@ -141,14 +174,16 @@ public class GameActivity extends SimpleBaseGameActivity {
 
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
+		StartupTrace.mark("activity created");
 		initializing = true;
-		game = App.getGame();
 		synchronized (gameLock) {
-			// as game is shared between activities we need to cleanup all views attached to the objects
-			game.releaseViews();
 			scene = null;
 			scoreText = null;
+			boardView = null;
+			cellViews = null;
+			cellPositions = null;
 			gameOverView = null;
+			hintView = null;
 		}
 
 		super.onCreate(savedInstanceState);
@@ -157,7 +192,7 @@ public class GameActivity extends SimpleBaseGameActivity {
 
 	@Override
 	public boolean dispatchTouchEvent(MotionEvent ev) {
-		if (!animating && !initializing && isGameRunning() && gameOverView == null) {
+		if (!animating && !initializing && isGameRunning() && gameOverView == null && autoplay == null) {
 			gestureDetector.onTouchEvent(ev);
 		}
 		return super.dispatchTouchEvent(ev);
@@ -200,6 +235,7 @@ public class GameActivity extends SimpleBaseGameActivity {
 		scene.registerTouchArea(scoreText);
 
 		scene.attachChild(createBoard());
+		scene.attachChild(createHintView());
 
 		final String rules = getString(R.string.rules);
 		final Font rulesFont = getFonts().getFont(d.rulesSize, R.color.text, 10);
@@ -207,8 +243,17 @@ public class GameActivity extends SimpleBaseGameActivity {
 
 		if (game.isOver()) {
 			onGameOver();
+		} else {
+			synchronized (gameLock) {
+				outcomes.compute(game);
+			}
+			startHints();
 		}
 
+		scene.registerUpdateHandler(new AutoplayUpdateHandler());
+		scene.registerUpdateHandler(new FirstFrameUpdateHandler());
+		StartupTrace.mark("scene created");
+
 		initializing = false;
 
 		return scene;
@@ -239,8 +284,13 @@ public class GameActivity extends SimpleBaseGameActivity {
 			boardView.attachChild(boardRect);
 
 			final Board board = game.getBoard();
-			board.setView(boardView);
+			this.boardView = boardView;
 			final int size = board.getSize();
+			cellViews = new IEntity[size * size];
+			cellPositions = new Point[size * size];
+			for (int i = 0; i < size * size; i++) {
+				cellPositions[i] = newCellPosition(i / size, i % size);
+			}
 			for (int i = 0; i < size; i++) {
 				for (int j = 0; j < size; j++) {
 					boardView.attachChild(createNotValueCell(i, j));
@@ -272,9 +322,16 @@ public class GameActivity extends SimpleBaseGameActivity {
 
 	@Nonnull
 	private IEntity createValueCell(int i, int j, @Nonnull Cell cell) {
+		return createValueCell(i, j, cell, true);
+	}
+
+	@Nonnull
+	private IEntity createValueCell(int i, int j, @Nonnull Cell cell, boolean animate) {
 		final Rectangle cellView = createCell(i, j);
+		// exponent is used to find out if the view is still up to date, see renderCells()
+		cellView.setTag(cell.getExponent());
 		final String cellValue = String.valueOf(cell.getValue());
-		final CellStyle cellStyle = cellStyles.get(cell.getValue(), lastCellStyle);
+		final CellStyle cellStyle = cellStyles.get(cell.getExponent(), lastCellStyle);
 		cellView.setColor(getColor(cellStyle.getBgColorResId()));
 		Font cellFont = cellStyle.getFont();
 		float textWidth = FontUtils.measureText(cellFont, cellValue);
@@ -285,7 +342,10 @@ public class GameActivity extends SimpleBaseGameActivity {
 			textHeight = cellFont.getLineHeight();
 		}
 		cellView.attachChild(new Text(d.cellSize / 2 - textWidth / 2, d.cellSize / 2 - textHeight * 5 / 12, cellFont, cellValue, new TextOptions(CENTER), getVertexBufferObjectManager()));
-		cell.setView(cellView);
+		setCellView(i, j, cellView);
+		if (!animate) {
+			return cellView;
+		}
 		cellView.registerEntityModifier(new ScaleModifier(0.2f, 1f, 1.1f, new IEntityModifier.IEntityModifierListener() {
 			@Override
 			public void onModifierStarted(IModifier<IEntity> pModifier, IEntity pItem) {
@@ -313,7 +373,7 @@ public class GameActivity extends SimpleBaseGameActivity {
 		final Cell c = game.getBoard().getCell(i, j);
 		if (c.isWall()) {
 			final Rectangle cell = createCell(i, j);
-			final CellStyle cellStyle = cellStyles.get(c.getValue(), lastCellStyle);
+			final CellStyle cellStyle = cellStyles.get(c.getExponent(), lastCellStyle);
 			cell.setColor(getColor(cellStyle.getBgColorResId()));
 			return cell;
 		} else {
@@ -321,6 +381,10 @@ public class GameActivity extends SimpleBaseGameActivity {
 		}
 	}
 
+	private void setCellView(int i, int j, @Nullable IEntity view) {
+		cellViews[i * game.getBoard().getSize() + j] = view;
+	}
+
 	private Rectangle createCell(int i, int j) {
 		final Point position = newCellPosition(i, j);
 		final Rectangle cell = new Rectangle(position.x, position.y, d.cellSize, d.cellSize, getVertexBufferObjectManager());
@@ -339,22 +403,92 @@ public class GameActivity extends SimpleBaseGameActivity {
 
 	@Override
 	public EngineOptions onCreateEngineOptions() {
+		// dimensions depend on the size of the board
+		StartupTrace.mark("waiting for game");
+		game = App.getGame();
+		StartupTrace.mark("game received");
 		d.calculate(this, game);
 		final Camera camera = new Camera(0, 0, d.width, d.height);
 		return new EngineOptions(true, PORTRAIT_FIXED, new RatioResolutionPolicy(d.width, d.height), camera);
 	}
 
+	@Nonnull
+	private IEntity createHintView() {
+		final Rectangle hintView = new Rectangle(d.board.left, d.board.top, 0, 0, getVertexBufferObjectManager());
+		hintView.setColor(getColor(R.color.hint));
+		hintView.setVisible(false);
+		this.hintView = hintView;
+		return hintView;
+	}
+
+	/**
+	 * Starts searching for a hint for the current position. Must be called while the game is not modified, the search
+	 * itself runs on a copy of the game.
+	 */
+	private void startHints() {
+		if (autoplay != null || !GamePreferences.getDefault().hints) {
+			return;
+		}
+		final int id = hintsId.incrementAndGet();
+		hintEngine.startHints(game, HINTS_BUDGET_NANOS, new Expectimax.Listener() {
+			@Override
+			public void onBestMove(@Nonnull final Direction direction, int depth) {
+				runOnUpdateThread(new Runnable() {
+					@Override
+					public void run() {
+						if (hintsId.get() == id) {
+							showHint(direction);
+						}
+					}
+				});
+			}
+		});
+	}
+
+	private void stopHints() {
+		hintsId.incrementAndGet();
+		hintEngine.cancelHints();
+		if (hintView != null) {
+			hintView.setVisible(false);
+		}
+	}
+
+	private void showHint(@Nonnull Direction direction) {
+		final float thickness = d.cellPadding;
+		final Rect board = d.board;
+		switch (direction) {
+			case up:
+				hintView.setPosition(board.left, board.top);
+				hintView.setSize(board.width(), thickness);
+				break;
+			case down:
+				hintView.setPosition(board.left, board.bottom - thickness);
+				hintView.setSize(board.width(), thickness);
+				break;
+			case left:
+				hintView.setPosition(board.left, board.top);
+				hintView.setSize(thickness, board.height());
+				break;
+			case right:
+				hintView.setPosition(board.right - thickness, board.top);
+				hintView.setSize(thickness, board.height());
+				break;
+		}
+		hintView.setVisible(true);
+	}
+
 	@Override
-	protected void onPause() {
-		game.save(App.getPreferences());
-		super.onPause();
+	protected void onDestroy() {
+		hintEngine.shutdown();
+		outcomes.shutdown();
+		super.onDestroy();
 	}
 
 	@Override
 	protected synchronized void onResume() {
 		super.onResume();
 
-		if (!game.hasDefaultPreferences()) {
+		if (!GamePreferences.getDefault().isAppliedTo(game)) {
 			restartGame();
 		} else if (game.isOver()) {
 			onGameOver();
@@ -505,17 +639,34 @@ public class GameActivity extends SimpleBaseGameActivity {
 			return;
 		}
 
-		final CellsAnimationListener cellsAnimationListener = new CellsAnimationListener();
-
-		final List<CellChange.Move> moves = game.go(direction);
-		for (CellChange.Move move : moves) {
-			final Point from = newCellPosition(move.from.x, move.from.y);
-			final Point to = newCellPosition(move.to.x, move.to.y);
-			final IEntity cellView = move.cell.getView();
-			cellView.registerEntityModifier(new MoveModifier(0.2f, from.x, to.x, from.y, to.y, cellsAnimationListener, EaseSineInOut.getInstance()));
-			if (move instanceof CellChange.Move.Merge) {
-				final CellChange.Move.Merge merge = (CellChange.Move.Merge) move;
-				cellsAnimationListener.merges.add(merge);
+		synchronized (gameLock) {
+			// illegal moves are known without scanning the board if the outcomes are ready
+			Moves moves = outcomes.commit(game, direction);
+			if (moves == null) {
+				moves = this.moves;
+				game.go(direction, moves);
+			}
+			if (moves.isEmpty()) {
+				return;
+			}
+			stopHints();
+
+			final CellsAnimationListener cellsAnimationListener = new CellsAnimationListener(direction, moves);
+			// views are relocated in the order of the moves: a cell can move to the place of a cell of the same line
+			// which moved before it. Removed views are paired with the merges in the same order in
+			// CellsAnimationListener
+			for (int i = 0; i < moves.size(); i++) {
+				final int fromIndex = moves.getFrom(i);
+				final int toIndex = moves.getTo(i);
+				final Point from = cellPositions[fromIndex];
+				final Point to = cellPositions[toIndex];
+				final IEntity cellView = cellViews[fromIndex];
+				if (moves.isMerge(i)) {
+					cellsAnimationListener.removedViews.add(cellViews[toIndex]);
+				}
+				cellViews[fromIndex] = null;
+				cellViews[toIndex] = cellView;
+				cellView.registerEntityModifier(new MoveModifier(0.2f, from.x, to.x, from.y, to.y, cellsAnimationListener, EaseSineInOut.getInstance()));
 			}
 		}
 	}
@@ -523,10 +674,22 @@ public class GameActivity extends SimpleBaseGameActivity {
 	private class CellsAnimationListener implements IEntityModifier.IEntityModifierListener {
 
 		@Nonnull
-		private final List<CellChange.Move.Merge> merges = new ArrayList<CellChange.Move.Merge>();
+		private final List<IEntity> removedViews = new ArrayList<IEntity>();
+
+		@Nonnull
+		private final Direction direction;
+
+		// moves which are animated
+		@Nonnull
+		private final Moves moves;
 
 		private int count = 0;
 
+		private CellsAnimationListener(@Nonnull Direction direction, @Nonnull Moves moves) {
+			this.direction = direction;
+			this.moves = moves;
+		}
+
 		@Override
 		public void onModifierStarted(IModifier<IEntity> pModifier, IEntity pItem) {
 			count++;
@@ -541,23 +704,29 @@ public class GameActivity extends SimpleBaseGameActivity {
 					@Override
 					public void run() {
 						synchronized (gameLock) {
-							final IEntity boardView = game.getBoard().getView();
-
 							updateScore();
 
-							for (CellChange.Move.Merge merge : merges) {
-								boardView.detachChild(merge.cell.getView());
-								boardView.attachChild(createValueCell(merge.to.x, merge.to.y));
-								boardView.detachChild(merge.removedCell.getView());
+							final int size = game.getBoard().getSize();
+							for (int i = 0, merge = 0; i < moves.size(); i++) {
+								if (moves.isMerge(i)) {
+									final int to = moves.getTo(i);
+									boardView.detachChild(cellViews[to]);
+									boardView.attachChild(createValueCell(to / size, to % size));
+									boardView.detachChild(removedViews.get(merge++));
+								}
 							}
 
 							final List<CellChange.New> newCells = game.prepareNextTurn();
+							Saves.saveTurn(game, direction, newCells, App.getJournal());
 							for (CellChange.New newCell : newCells) {
-								boardView.attachChild(createValueCell(newCell.position.x, newCell.position.y, newCell.cell));
+								boardView.attachChild(createValueCell(newCell.position.row, newCell.position.col, newCell.cell));
 							}
 
 							if (game.isOver()) {
 								onGameOver();
+							} else {
+								outcomes.compute(game);
+								startHints();
 							}
 
 							animating = false;
@@ -568,6 +737,116 @@ public class GameActivity extends SimpleBaseGameActivity {
 		}
 	}
 
+	/**
+	 * Plays the game if {@link #autoplay} is set. Slow autoplay makes moves searched in background via
+	 * {@link #go(Direction)} with all the animations. Fast autoplay makes all the moves due in the frame at once and then only the cells changed since the
+	 * last frame are redrawn, without animations.
+	 */
+	private class AutoplayUpdateHandler implements IUpdateHandler {
+
+		@Override
+		public void onUpdate(float secondsElapsed) {
+			final Autoplay autoplay = GameActivity.this.autoplay;
+			if (autoplay == null || animating || initializing || gameOverView != null) {
+				return;
+			}
+
+			final int turns = autoplay.getTurns(secondsElapsed);
+			if (autoplay.isAnimated()) {
+				// search runs in background: only its result is applied here
+				final Direction direction;
+				synchronized (gameLock) {
+					direction = autoplay.pollMove(game, turns);
+				}
+				if (direction != null) {
+					go(direction);
+				}
+				return;
+			}
+
+			if (turns == 0) {
+				return;
+			}
+
+			synchronized (gameLock) {
+				for (int i = 0; i < turns && !game.isOver(); i++) {
+					final Direction direction = autoplay.findMove(game);
+					if (direction == null) {
+						break;
+					}
+					game.go(direction, moves);
+					Saves.saveTurn(game, direction, game.prepareNextTurn(), App.getJournal());
+				}
+
+				renderCells();
+				updateScore();
+				if (game.isOver()) {
+					onGameOver();
+				}
+			}
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	/**
+	 * Marks the end of the startup: the scene is drawn right after its first update
+	 */
+	private static class FirstFrameUpdateHandler implements IUpdateHandler {
+
+		private boolean done;
+
+		@Override
+		public void onUpdate(float secondsElapsed) {
+			if (!done) {
+				done = true;
+				StartupTrace.finish("first frame");
+			}
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	/**
+	 * Redraws the cells which differ from the board
+	 */
+	private void renderCells() {
+		final Board board = game.getBoard();
+		final int size = board.getSize();
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				final IEntity view = cellViews[i * size + j];
+				final Cell cell = board.getCell(i, j);
+				if (cell.hasValue()) {
+					if (view == null || view.getTag() != cell.getExponent()) {
+						if (view != null) {
+							boardView.detachChild(view);
+						}
+						boardView.attachChild(createValueCell(i, j, cell, false));
+					}
+				} else if (view != null) {
+					boardView.detachChild(view);
+					setCellView(i, j, null);
+				}
+			}
+		}
+	}
+
+	private void toggleAutoplay() {
+		final Autoplay autoplay = this.autoplay;
+		if (autoplay == null) {
+			stopHints();
+			this.autoplay = Autoplay.newAutoplay(GamePreferences.getDefault().autoplaySpeed, hintEngine);
+		} else {
+			this.autoplay = null;
+			autoplay.stop();
+		}
+	}
+
 	private void onGameOver() {
 		if (scene == null) {
 			return;
@@ -639,10 +918,10 @@ public class GameActivity extends SimpleBaseGameActivity {
 	}
 
 	private void updateScore() {
-		final HighScore highestScore = highScores.getHighestScore();
-		final int scorePoints = game.getScore().getPoints();
+		final HighScore highestScore = App.getHighScores().getHighestScore();
+		final long scorePoints = game.getScore().getPoints();
 		if (highestScore.hasPoints()) {
-			final int highScorePoints = highestScore.getPoints();
+			final long highScorePoints = highestScore.getPoints();
 			scoreText.setText(getString(R.string.score_with_highscore, scorePoints, highScorePoints));
 		} else {
 			scoreText.setText(getString(R.string.score, scorePoints));
@@ -651,10 +930,12 @@ public class GameActivity extends SimpleBaseGameActivity {
 
 	private void restartGame() {
 		synchronized (gameLock) {
+			final HighScores highScores = App.getHighScores();
 			if (highScores.addHighScore(game)) {
-				highScores.save(App.getPreferences());
+				Saves.saveHighScores(highScores, getFilesDir(), App.getWriteBehind());
 			}
-			game.reset();
+			GamePreferences.getDefault().reset(game);
+			Saves.saveGame(game, App.getJournal());
 		}
 		restartActivity(this);
 	}
@@ -694,6 +975,7 @@ public class GameActivity extends SimpleBaseGameActivity {
 			final List<IdentifiableMenuItem<MenuItem>> items = new ArrayList<IdentifiableMenuItem<MenuItem>>();
 			items.add(new RestartMenuItem());
 			items.add(new HighScoresMenuItem());
+			items.add(new AutoplayMenuItem());
 			items.add(new PreferencesMenuItem());
 			items.add(new ShareMenuItem());
 			this.menu = ListActivityMenu.fromResource(R.menu.menu, items, AndroidMenuHelper.getInstance());
@@ -734,6 +1016,20 @@ public class GameActivity extends SimpleBaseGameActivity {
 		}
 	}
 
+	private final class AutoplayMenuItem implements IdentifiableMenuItem<MenuItem> {
+
+		@Nonnull
+		@Override
+		public Integer getItemId() {
+			return R.id.menu_autoplay;
+		}
+
+		@Override
+		public void onClick(@Nonnull MenuItem data, @Nonnull Context context) {
+			toggleAutoplay();
+		}
+	}
+
 	private final class PreferencesMenuItem implements IdentifiableMenuItem<MenuItem> {
 
 		@Nonnull
@@ -9,8 +9,6 @@ import org.solovyev.common.text.Mapper;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
-import static org.solovyev.android.games.game2048.Board.newBoard;
-
 final class GamePreferences {
 
 	@Nonnull
@@ -34,21 +32,60 @@ final class GamePreferences {
 	@Nonnull
 	private static final BooleanPreference WITH_WALLS = BooleanPreference.of("game.withWalls", true);
 
-	private GamePreferences(@Nonnull Difficulty difficulty, int size, boolean withWalls) {
+	@Nonnull
+	private static final BooleanPreference HINTS = BooleanPreference.of("game.hints", false);
+
+	@Nonnull
+	private static final StringPreference<Integer> AUTOPLAY_SPEED = StringPreference.ofTypedValue("autoplay.speed", "2", new Mapper<Integer>() {
+		@Nullable
+		@Override
+		public String formatValue(@Nullable Integer integer) throws IllegalArgumentException {
+			return String.valueOf(integer);
+		}
+
+		@Nullable
+		@Override
+		public Integer parseValue(@Nullable String s) throws IllegalArgumentException {
+			return Integer.valueOf(s);
+		}
+	});
+
+	private GamePreferences(@Nonnull Difficulty difficulty, int size, boolean withWalls, boolean hints, int autoplaySpeed) {
 		this.difficulty = difficulty;
 		this.size = size;
 		this.withWalls = withWalls;
+		this.hints = hints;
+		this.autoplaySpeed = autoplaySpeed;
 	}
 
 	@Nonnull
 	public final Difficulty difficulty;
 	public final int size;
 	public final boolean withWalls;
+	public final boolean hints;
+
+	// moves per second
+	public final int autoplaySpeed;
 
 	public static void applyDefaultValues(@Nonnull SharedPreferences preferences) {
 		DIFFICULTY.tryPutDefault(preferences);
 		SIZE.tryPutDefault(preferences);
 		WITH_WALLS.tryPutDefault(preferences);
+		HINTS.tryPutDefault(preferences);
+		AUTOPLAY_SPEED.tryPutDefault(preferences);
+	}
+
+	@Nonnull
+	Game newGame() {
+		return Game.newGame(size, withWalls, difficulty);
+	}
+
+	void reset(@Nonnull Game game) {
+		game.reset(size, withWalls, difficulty);
+	}
+
+	boolean isAppliedTo(@Nonnull Game game) {
+		return game.hasSettings(size, withWalls, difficulty);
 	}
 
 	@Nonnull
@@ -57,6 +94,8 @@ final class GamePreferences {
 		final Difficulty difficulty = DIFFICULTY.getPreferenceNoError(preferences);
 		final Integer size = SIZE.getPreferenceNoError(preferences);
 		final Boolean withWalls = WITH_WALLS.getPreferenceNoError(preferences);
-		return new GamePreferences(difficulty, size, withWalls);
+		final Boolean hints = HINTS.getPreferenceNoError(preferences);
+		final Integer autoplaySpeed = AUTOPLAY_SPEED.getPreferenceNoError(preferences);
+		return new GamePreferences(difficulty, size, withWalls, hints, autoplaySpeed);
 	}
 }
@@ -0,0 +1,223 @@
+package org.solovyev.android.games.game2048;
+
+import android.content.SharedPreferences;
+import android.util.Log;
+import org.json.JSONException;
+import org.solovyev.android.prefs.StringPreference;
+import org.solovyev.common.text.Strings;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.solovyev.android.games.game2048.App.showToast;
+
+/**
+ * Saves and restores {@link Game} (turn by turn in {@link MoveJournal}) and {@link HighScores} (as JSON) in files.
+ * Saving a game or high scores only copies them on the caller's thread, serialization and writing are done by
+ * {@link WriteBehind}. Saves of the previous versions (JSON in application preferences) are moved to the files when
+ * restored.
+ */
+final class Saves {
+
+	@Nonnull
+	private static final String GAME_FILE = "game.bin";
+
+	@Nonnull
+	private static final String JOURNAL_FILE = "game.journal";
+
+	@Nonnull
+	private static final String HIGH_SCORES_FILE = "highScores.json";
+
+	@Nonnull
+	private static final String CHARSET = "UTF-8";
+
+	// saves of the previous versions
+	@Nonnull
+	private static final StringPreference<String> state = StringPreference.of("state", null);
+
+	@Nonnull
+	private static final StringPreference<String> highScoresState = StringPreference.of("highScores", null);
+
+	private Saves() {
+		throw new AssertionError();
+	}
+
+	@Nonnull
+	public static MoveJournal newMoveJournal(@Nonnull File dir, @Nonnull WriteBehind writer) {
+		return MoveJournal.newMoveJournal(new File(dir, GAME_FILE), new File(dir, JOURNAL_FILE), writer);
+	}
+
+	/**
+	 * Restores the game saved in <var>journal</var>, blocks until a save of the previous version is moved to the files
+	 */
+	@Nonnull
+	public static Game newGameFromSave(@Nonnull MoveJournal journal, @Nonnull WriteBehind writer, @Nonnull SharedPreferences preferences) {
+		try {
+			final Game game = journal.restore();
+			if (game != null) {
+				return game;
+			}
+		} catch (RuntimeException e) {
+			onSaveLoadException(e, R.string.unable_to_load_game);
+		} catch (IOException e) {
+			onSaveLoadException(e, R.string.unable_to_load_game);
+		}
+
+		Game game = gameFromJson(state.getPreference(preferences));
+		final boolean legacy = game != null;
+		if (game == null) {
+			game = GamePreferences.getDefault().newGame();
+		}
+		if (saveGame(game, journal) && legacy) {
+			try {
+				writer.flush();
+				if (journal.isCheckpointSaved()) {
+					state.putPreference(preferences, null);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return game;
+	}
+
+	/**
+	 * Saves the whole <var>game</var> in background, must be called when a new game starts. The game must not be
+	 * modified during this call.
+	 *
+	 * @return true if the save was scheduled
+	 */
+	public static boolean saveGame(@Nonnull Game game, @Nonnull MoveJournal journal) {
+		try {
+			journal.checkpoint(game);
+			return true;
+		} catch (IOException e) {
+			onSaveLoadException(e, R.string.unable_to_save_game);
+		}
+		return false;
+	}
+
+	/**
+	 * Saves the turn which was just played in <var>game</var>, see {@link MoveJournal#append(Game, Direction, List)}
+	 */
+	public static void saveTurn(@Nonnull Game game, @Nonnull Direction direction, @Nonnull List<CellChange.New> newCells, @Nonnull MoveJournal journal) {
+		try {
+			journal.append(game, direction, newCells);
+		} catch (IOException e) {
+			onSaveLoadException(e, R.string.unable_to_save_game);
+		}
+	}
+
+	@Nonnull
+	public static HighScores newHighScoresFromSave(@Nonnull File dir, @Nonnull SharedPreferences preferences) {
+		final File file = new File(dir, HIGH_SCORES_FILE);
+		if (file.exists()) {
+			try {
+				final HighScores highScores = highScoresFromJson(new String(readFile(file), CHARSET));
+				if (highScores != null) {
+					return highScores;
+				}
+			} catch (IOException e) {
+				Log.e(App.TAG, e.getMessage(), e);
+			}
+		}
+
+		final String json = highScoresState.getPreference(preferences);
+		final HighScores highScores = highScoresFromJson(json);
+		if (highScores == null) {
+			return HighScores.newHighScores();
+		}
+		try {
+			if (moveToFile(file, json.getBytes(CHARSET))) {
+				highScoresState.putPreference(preferences, null);
+			}
+		} catch (IOException e) {
+			Log.e(App.TAG, e.getMessage(), e);
+		}
+		return highScores;
+	}
+
+	/**
+	 * Saves a copy of <var>highScores</var> in background, the high scores must not be modified during this call
+	 */
+	public static void saveHighScores(@Nonnull HighScores highScores, @Nonnull File dir, @Nonnull WriteBehind writer) {
+		final HighScores snapshot = highScores.copy();
+		writer.save(new File(dir, HIGH_SCORES_FILE), new WriteBehind.Snapshot() {
+			@Nonnull
+			@Override
+			public byte[] toBytes() throws IOException {
+				try {
+					return snapshot.toJson().getBytes(CHARSET);
+				} catch (JSONException e) {
+					throw new IOException(e.getMessage());
+				}
+			}
+		});
+	}
+
+	/**
+	 * Writes high scores of the previous version to <var>file</var> synchronously (happens once)
+	 *
+	 * @return true if the save was written
+	 */
+	private static boolean moveToFile(@Nonnull File file, @Nonnull byte[] bytes) {
+		try {
+			WriteBehind.writeFile(file, bytes);
+			return true;
+		} catch (IOException e) {
+			Log.e(App.TAG, e.getMessage(), e);
+		}
+		return false;
+	}
+
+	@Nonnull
+	private static byte[] readFile(@Nonnull File file) throws IOException {
+		final RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			final byte[] bytes = new byte[(int) in.length()];
+			in.readFully(bytes);
+			return bytes;
+		} finally {
+			in.close();
+		}
+	}
+
+	@Nullable
+	private static Game gameFromJson(@Nullable String state) {
+		try {
+			if (!Strings.isEmpty(state)) {
+				return JsonGameReader.read(state);
+			}
+		} catch (RuntimeException e) {
+			onSaveLoadException(e, R.string.unable_to_load_game);
+		} catch (JSONException e) {
+			onSaveLoadException(e, R.string.unable_to_load_game);
+		}
+
+		return null;
+	}
+
+	@Nullable
+	private static HighScores highScoresFromJson(@Nullable String state) {
+		try {
+			if (!Strings.isEmpty(state)) {
+				return HighScores.fromJson(state);
+			}
+		} catch (RuntimeException e) {
+			Log.e(App.TAG, e.getMessage(), e);
+		} catch (JSONException e) {
+			Log.e(App.TAG, e.getMessage(), e);
+		}
+
+		return null;
+	}
+
+	static void onSaveLoadException(@Nonnull Exception e, int messageResId) {
+		showToast(messageResId);
+		Log.e(App.TAG, e.getMessage(), e);
+	}
+}
@@ -0,0 +1,50 @@
+package org.solovyev.android.games.game2048;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Logs the stages of the application's startup with the time elapsed since {@link #start()}, e.g. to compare the time
+ * to the first frame between versions: <code>adb logcat -s 2048+:D | grep Startup</code>
+ */
+final class StartupTrace {
+
+	private static final long NOT_STARTED = -1;
+
+	// guarded by StartupTrace.class
+	private static long start = NOT_STARTED;
+
+	private StartupTrace() {
+		throw new AssertionError();
+	}
+
+	static synchronized void start() {
+		start = SystemClock.uptimeMillis();
+		log("start");
+	}
+
+	/**
+	 * Logs <var>stage</var> if the startup is not finished yet, may be called from any thread
+	 */
+	static synchronized void mark(@Nonnull String stage) {
+		if (start != NOT_STARTED) {
+			log(stage);
+		}
+	}
+
+	/**
+	 * Logs <var>stage</var> as the last one, following stages are not logged
+	 */
+	static synchronized void finish(@Nonnull String stage) {
+		if (start != NOT_STARTED) {
+			log(stage);
+			start = NOT_STARTED;
+		}
+	}
+
+	private static void log(@Nonnull String stage) {
+		Log.d(App.TAG, "Startup: " + stage + " at " + (SystemClock.uptimeMillis() - start) + " ms on " + Thread.currentThread().getName());
+	}
+}
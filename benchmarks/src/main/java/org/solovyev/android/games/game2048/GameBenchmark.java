@@ -0,0 +1,64 @@
+package org.solovyev.android.games.game2048;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class for benchmarks run against a set of positions generated for each combination of parameters
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class GameBenchmark {
+
+	// power of 2, see nextGame()
+	private static final int POSITIONS = 256;
+
+	@Param({"4", "5", "6", "7", "8", "9"})
+	public int size;
+
+	@Param({"false", "true"})
+	public boolean withWalls;
+
+	@Param
+	public Difficulty difficulty;
+
+	@Param
+	public Source source;
+
+	private Game[] games;
+
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUpPositions() {
+		games = Positions.newGames(size, withWalls, difficulty, source, POSITIONS);
+	}
+
+	@Nonnull
+	final Game getGame(int i) {
+		return games[i];
+	}
+
+	final int getGamesCount() {
+		return games.length;
+	}
+
+	/**
+	 * @return index of the next position, positions are iterated in a cycle
+	 */
+	final int next() {
+		next = (next + 1) & (POSITIONS - 1);
+		return next;
+	}
+
+	@Nonnull
+	final Game nextGame() {
+		return games[next()];
+	}
+}
@@ -0,0 +1,47 @@
+package org.solovyev.android.games.game2048;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Level;
+
+import java.util.List;
+
+/**
+ * Measures {@link Game#go(Direction)} and {@link Game#go(Direction, Moves)}. As a move changes the board each
+ * invocation starts with copying the next position, {@link #copy()} measures the cost of the copying alone.
+ */
+public class GoBenchmark extends GameBenchmark {
+
+	@Param
+	public Direction direction;
+
+	private Game game;
+
+	private final Moves moves = Moves.newMoves();
+
+	@Setup(Level.Trial)
+	public void setUpGame() {
+		game = Game.newGame(size, withWalls, difficulty);
+	}
+
+	@Benchmark
+	public Board copy() {
+		final Board board = game.getBoard();
+		board.copyFrom(nextGame().getBoard());
+		return board;
+	}
+
+	@Benchmark
+	public Moves go() {
+		game.getBoard().copyFrom(nextGame().getBoard());
+		game.go(direction, moves);
+		return moves;
+	}
+
+	@Benchmark
+	public List<CellChange.Move> goWithChanges() {
+		game.getBoard().copyFrom(nextGame().getBoard());
+		return game.go(direction);
+	}
+}
@@ -0,0 +1,23 @@
+package org.solovyev.android.games.game2048;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures {@link HighScores#addHighScore(Game)} with games finished at different positions
+ */
+public class HighScoresBenchmark extends GameBenchmark {
+
+	private HighScores highScores;
+
+	@Setup(Level.Iteration)
+	public void setUpHighScores() {
+		highScores = HighScores.newHighScores();
+	}
+
+	@Benchmark
+	public boolean addHighScore() {
+		return highScores.addHighScore(nextGame());
+	}
+}
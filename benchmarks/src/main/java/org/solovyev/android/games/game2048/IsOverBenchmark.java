@@ -0,0 +1,14 @@
+package org.solovyev.android.games.game2048;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Measures {@link Game#isOver()}, note that JMH runs benchmarks with assertions disabled
+ */
+public class IsOverBenchmark extends GameBenchmark {
+
+	@Benchmark
+	public boolean isOver() {
+		return nextGame().isOver();
+	}
+}
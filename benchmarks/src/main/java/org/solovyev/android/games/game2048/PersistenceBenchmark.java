@@ -0,0 +1,83 @@
+package org.solovyev.android.games.game2048;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.io.IOException;
+
+/**
+ * Measures saving and restoring of {@link Board} and {@link Game} as JSON (via {@link JSONObject} and via
+ * {@link JsonGameReader}) and as {@link GameSnapshot}
+ */
+public class PersistenceBenchmark extends GameBenchmark {
+
+	private JSONObject[] boards;
+
+	private String[] boardStrings;
+
+	private String[] games;
+
+	private byte[][] snapshots;
+
+	@Setup(Level.Trial)
+	public void setUpStates() throws JSONException {
+		boards = new JSONObject[getGamesCount()];
+		boardStrings = new String[getGamesCount()];
+		games = new String[getGamesCount()];
+		snapshots = new byte[getGamesCount()][];
+		for (int i = 0; i < getGamesCount(); i++) {
+			boards[i] = getGame(i).getBoard().toJson();
+			boardStrings[i] = boards[i].toString();
+			games[i] = getGame(i).toJson();
+			snapshots[i] = GameSnapshot.toBytes(getGame(i));
+		}
+	}
+
+	@Benchmark
+	public JSONObject boardToJson() throws JSONException {
+		return nextGame().getBoard().toJson();
+	}
+
+	@Benchmark
+	public Board boardFromJson() throws JSONException {
+		return Board.fromJson(boards[next()]);
+	}
+
+	@Benchmark
+	public Board boardFromJsonString() throws JSONException {
+		return Board.fromJson(new JSONObject(boardStrings[next()]));
+	}
+
+	@Benchmark
+	public Board boardFromJsonStreaming() throws JSONException {
+		return JsonGameReader.readBoard(boardStrings[next()]);
+	}
+
+	@Benchmark
+	public String save() throws JSONException {
+		return nextGame().toJson();
+	}
+
+	@Benchmark
+	public Game restore() throws JSONException {
+		return Game.fromJson(games[next()]);
+	}
+
+	@Benchmark
+	public Game restoreStreaming() throws JSONException {
+		return JsonGameReader.read(games[next()]);
+	}
+
+	@Benchmark
+	public byte[] saveSnapshot() {
+		return GameSnapshot.toBytes(nextGame());
+	}
+
+	@Benchmark
+	public Game restoreSnapshot() throws IOException {
+		return GameSnapshot.fromBytes(snapshots[next()]);
+	}
+}
@@ -0,0 +1,60 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+
+final class Positions {
+
+	private static final Direction[] directions = Direction.values();
+
+	private Positions() {
+		throw new AssertionError();
+	}
+
+	@Nonnull
+	static Game[] newGames(int size, boolean withWalls, @Nonnull Difficulty difficulty, @Nonnull Source source, int count) {
+		switch (source) {
+			case selfPlay:
+				return newSelfPlayGames(size, withWalls, difficulty, count);
+			case random:
+				return newRandomGames(size, withWalls, difficulty, count);
+		}
+		throw new AssertionError();
+	}
+
+	@Nonnull
+	private static Game[] newSelfPlayGames(int size, boolean withWalls, @Nonnull Difficulty difficulty, int count) {
+		// positions are the same in every run
+		final RandomSource random = RandomSources.newRandomSource(size);
+		final Moves moves = Moves.newMoves();
+		final Game[] games = new Game[count];
+
+		Game game = Game.newGame(size, withWalls, difficulty, random.split());
+		int i = 0;
+		while (i < count) {
+			game.go(directions[random.nextInt(directions.length)], moves);
+			if (!moves.isEmpty()) {
+				game.prepareNextTurn();
+				// not every position is taken so that positions of one game cover it from start to end
+				if (random.nextInt(size) == 0) {
+					games[i++] = game.copy();
+				}
+			}
+			if (game.isOver()) {
+				game = Game.newGame(size, withWalls, difficulty, random.split());
+			}
+		}
+		return games;
+	}
+
+	@Nonnull
+	private static Game[] newRandomGames(int size, boolean withWalls, @Nonnull Difficulty difficulty, int count) {
+		final RandomSource random = RandomSources.newRandomSource(size);
+		final Game[] games = new Game[count];
+		for (int i = 0; i < count; i++) {
+			final Game game = Game.newGame(size, withWalls, difficulty, random.split());
+			game.getBoard().random(withWalls);
+			games[i] = game;
+		}
+		return games;
+	}
+}
@@ -0,0 +1,26 @@
+package org.solovyev.android.games.game2048;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.List;
+
+/**
+ * Measures {@link Board#prepareNextTurn(Difficulty)}, see {@link GoBenchmark#copy()} for the cost of copying
+ */
+public class PrepareNextTurnBenchmark extends GameBenchmark {
+
+	private Board board;
+
+	@Setup(Level.Trial)
+	public void setUpBoard() {
+		board = Board.newBoard(size, withWalls);
+	}
+
+	@Benchmark
+	public List<CellChange.New> prepareNextTurn() {
+		board.copyFrom(nextGame().getBoard());
+		return board.prepareNextTurn(difficulty);
+	}
+}
@@ -0,0 +1,16 @@
+package org.solovyev.android.games.game2048;
+
+/**
+ * Where benchmark positions come from
+ */
+public enum Source {
+	/**
+	 * Positions met while playing random moves, from the start of the game till its end
+	 */
+	selfPlay,
+
+	/**
+	 * Fully filled boards from {@link Board#random(boolean)}
+	 */
+	random
+}
@@ -0,0 +1,91 @@
+package org.solovyev.android.games.game2048;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and stress test of {@link ConcurrentTranspositionTable}, run with different number of threads, e.g.
+ * <code>-t 1</code>, <code>-t 4</code>. Value and depth stored for a key are functions of the key, so any other value
+ * returned by the table means a corrupted entry and fails the benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TranspositionTableBenchmark {
+
+	@Param({"16", "20"})
+	public int bucketsLog;
+
+	// keys are taken from a space bigger than the table so that entries are replaced all the time
+	@Param({"4"})
+	public int keySpaceFactor;
+
+	private ConcurrentTranspositionTable table;
+
+	private long keySpace;
+
+	@Setup(Level.Trial)
+	public void setUpTable() {
+		table = ConcurrentTranspositionTable.newConcurrentTranspositionTable(1 << bucketsLog);
+		keySpace = (long) keySpaceFactor << bucketsLog;
+	}
+
+	@State(Scope.Thread)
+	public static class Keys {
+
+		private final RandomSource random = RandomSources.newRandomSource();
+
+		long nextKey(long keySpace) {
+			// scrambled so that keys are not consecutive
+			return (random.nextLong() % keySpace) * 0xbf58476d1ce4e5b9L;
+		}
+	}
+
+	@Benchmark
+	public double get(Keys keys) {
+		final long key = keys.nextKey(keySpace);
+		return check(key, table.get(key, 1));
+	}
+
+	@Benchmark
+	public void put(Keys keys) {
+		final long key = keys.nextKey(keySpace);
+		table.put(key, depthOf(key), valueOf(key));
+	}
+
+	/**
+	 * Typical search load: a store for every 3 probes
+	 */
+	@Benchmark
+	@OperationsPerInvocation(4)
+	public double mixed(Keys keys) {
+		double result = 0;
+		for (int i = 0; i < 3; i++) {
+			final long key = keys.nextKey(keySpace);
+			result += check(key, table.get(key, 1));
+		}
+		final long key = keys.nextKey(keySpace);
+		table.put(key, depthOf(key), valueOf(key));
+		return result;
+	}
+
+	private static double check(long key, double value) {
+		if (!Double.isNaN(value) && value != valueOf(key)) {
+			throw new IllegalStateException("Corrupted entry for key " + key + ": " + value);
+		}
+		return value;
+	}
+
+	private static int depthOf(long key) {
+		return 1 + (int) (key >>> 61);
+	}
+
+	private static double valueOf(long key) {
+		// exactly representable as float
+		return (double) (key >>> 40);
+	}
+}
@@ -0,0 +1,234 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Move engine for 4x4 boards: sixteen cells are packed into one long as 4-bit exponents (cell (row, col) is stored in
+ * nibble row * 4 + col, 0 is an empty cell and 0xF is a wall). Rows are moved via precomputed tables, columns are
+ * moved by transposing the board first.
+ */
+final class BitBoard {
+
+	static final int SIZE = 4;
+
+	static final long NO_BOARD = -1L;
+
+	private static final int WALL = 0xF;
+
+	// highest exponent which can be packed: merging two of them must not produce a wall
+	private static final int MAX_EXPONENT = WALL - 2;
+
+	private static final int ROW_MASK = 0xFFFF;
+
+	private static final int MOVE_BITS = 3;
+	private static final int MOVE_POSITION_MASK = 0x3;
+	private static final int MOVE_MERGE = 0x4;
+
+	private BitBoard() {
+		throw new AssertionError();
+	}
+
+	static boolean isSupported(@Nonnull Board board) {
+		return board.size == SIZE;
+	}
+
+	static long pack(@Nonnull byte[] cells) {
+		return pack(cells, MAX_EXPONENT);
+	}
+
+	private static long pack(@Nonnull byte[] cells, int maxExponent) {
+		long board = 0;
+		for (int i = 0; i < cells.length; i++) {
+			final byte cell = cells[i];
+			final long nibble;
+			if (cell == Cell.WALL) {
+				nibble = WALL;
+			} else if (cell > maxExponent) {
+				return NO_BOARD;
+			} else {
+				nibble = cell;
+			}
+			board |= nibble << (4 * i);
+		}
+		return board;
+	}
+
+	/**
+	 * Moves all the cells of the <var>board</var> in the given <var>direction</var>. Changes are applied to
+	 * <var>board</var> and added to <var>moves</var> in the same order as {@link Game} adds them for the boards of other
+	 * sizes: line by line, cells of a line in the order of their distance to the side to which they move. Lines don't
+	 * share cells, so only the order within a line matters for the users of {@link Moves}.
+	 *
+	 * @return false if the board can't be packed and nothing was done
+	 */
+	static boolean go(@Nonnull Board board, @Nonnull Direction direction, @Nonnull Moves moves) {
+		final long packed = pack(board.cells);
+		if (packed == NO_BOARD) {
+			return false;
+		}
+
+		final boolean vertical = direction == Direction.up || direction == Direction.down;
+		final boolean reversed = direction == Direction.right || direction == Direction.down;
+		final long lines = vertical ? transpose(packed) : packed;
+
+		long result = 0;
+		long lineMoves = 0;
+		for (int line = 0; line < SIZE; line++) {
+			int row = (int) (lines >>> (16 * line)) & ROW_MASK;
+			if (reversed) {
+				row = reverse(row);
+			}
+			final int movedRow = Tables.rows[row];
+			result |= ((long) (reversed ? reverse(movedRow) : movedRow)) << (16 * line);
+			lineMoves |= ((long) Tables.moves[row]) << (MOVE_BITS * SIZE * line);
+		}
+		if (vertical) {
+			result = transpose(result);
+		}
+
+		if (result != packed) {
+			for (int line = 0; line < SIZE; line++) {
+				for (int k = 0; k < SIZE; k++) {
+					final int move = (int) (lineMoves >>> (MOVE_BITS * (SIZE * line + k)));
+					final int to = move & MOVE_POSITION_MASK;
+					if (to != k) {
+						final int from = reversed ? SIZE - 1 - k : k;
+						final int newPosition = reversed ? SIZE - 1 - to : to;
+						final boolean changed;
+						if (vertical) {
+							changed = board.updateBoard(from * SIZE + line, newPosition * SIZE + line, moves);
+						} else {
+							changed = board.updateBoard(line * SIZE + from, line * SIZE + newPosition, moves);
+						}
+						assert changed;
+						assert moves.isMerge(moves.size() - 1) == ((move & MOVE_MERGE) != 0);
+					}
+				}
+			}
+		}
+
+		assert pack(board.cells, WALL - 1) == result;
+		return true;
+	}
+
+	/**
+	 * Moves the cells <code>first + k * step</code> for k in [0, length) of <var>board</var> towards the first one as
+	 * a row of {@link Tables}: missing cells of short segments are filled with walls. There must be no walls in the
+	 * segment.
+	 *
+	 * @return false if the segment is too long or can't be packed and nothing was done
+	 */
+	static boolean goSegment(@Nonnull Board board, int first, int step, int length, @Nonnull Moves moves) {
+		if (length > SIZE) {
+			return false;
+		}
+
+		final byte[] cells = board.cells;
+		int row = ROW_MASK;
+		for (int k = 0, i = first; k < length; k++, i += step) {
+			final byte cell = cells[i];
+			if (cell > MAX_EXPONENT) {
+				return false;
+			}
+			row = (row & ~(WALL << (4 * k))) | (cell << (4 * k));
+		}
+
+		if (Tables.rows[row] != row) {
+			final int rowMoves = Tables.moves[row];
+			for (int k = 0; k < length; k++) {
+				final int to = (rowMoves >>> (MOVE_BITS * k)) & MOVE_POSITION_MASK;
+				if (to != k) {
+					board.updateBoard(first + k * step, first + to * step, moves);
+				}
+			}
+		}
+		return true;
+	}
+
+	static long transpose(long board) {
+		final long a1 = board & 0xF0F00F0FF0F00F0FL;
+		final long a2 = board & 0x0000F0F00000F0F0L;
+		final long a3 = board & 0x0F0F00000F0F0000L;
+		final long a = a1 | (a2 << 12) | (a3 >>> 12);
+		final long b1 = a & 0xFF00FF0000FF00FFL;
+		final long b2 = a & 0x00FF00FF00000000L;
+		final long b3 = a & 0x00000000FF00FF00L;
+		return b1 | (b2 >>> 24) | (b3 << 24);
+	}
+
+	/**
+	 * @return board with reversed rows: cell (row, col) is moved to (row, 3 - col)
+	 */
+	static long mirror(long board) {
+		final long nibbles = ((board & 0x0F0F0F0F0F0F0F0FL) << 4) | ((board >>> 4) & 0x0F0F0F0F0F0F0F0FL);
+		return ((nibbles & 0x00FF00FF00FF00FFL) << 8) | ((nibbles >>> 8) & 0x00FF00FF00FF00FFL);
+	}
+
+	/**
+	 * @return board with reversed columns: cell (row, col) is moved to (3 - row, col)
+	 */
+	static long flip(long board) {
+		final long halves = (board << 32) | (board >>> 32);
+		return ((halves & 0x0000FFFF0000FFFFL) << 16) | ((halves >>> 16) & 0x0000FFFF0000FFFFL);
+	}
+
+	private static int reverse(int row) {
+		return ((row & 0xF) << 12) | ((row & 0xF0) << 4) | ((row >>> 4) & 0xF0) | ((row >>> 12) & 0xF);
+	}
+
+	/**
+	 * Results of moving every possible row to the left (towards nibble 0). For each cell of the row {@link #moves}
+	 * contains its new position and whether it was merged.
+	 */
+	private static final class Tables {
+
+		@Nonnull
+		private static final char[] rows = new char[ROW_MASK + 1];
+
+		@Nonnull
+		private static final char[] moves = new char[ROW_MASK + 1];
+
+		static {
+			final int[] cells = new int[SIZE];
+			for (int row = 0; row <= ROW_MASK; row++) {
+				for (int k = 0; k < SIZE; k++) {
+					cells[k] = (row >>> (4 * k)) & 0xF;
+				}
+
+				int rowMoves = 0;
+				int target = 0;
+				int last = -1;
+				boolean lastMerged = false;
+				for (int k = 0; k < SIZE; k++) {
+					final int value = cells[k];
+					int to = k;
+					if (value == WALL) {
+						target = k + 1;
+						last = -1;
+					} else if (value != 0) {
+						cells[k] = 0;
+						if (last >= 0 && !lastMerged && cells[last] == value) {
+							cells[last] = value + 1;
+							lastMerged = true;
+							to = last | MOVE_MERGE;
+						} else {
+							cells[target] = value;
+							to = target;
+							last = target;
+							lastMerged = false;
+							target++;
+						}
+					}
+					rowMoves |= to << (MOVE_BITS * k);
+				}
+
+				int movedRow = 0;
+				for (int k = 0; k < SIZE; k++) {
+					movedRow |= cells[k] << (4 * k);
+				}
+				rows[row] = (char) movedRow;
+				moves[row] = (char) rowMoves;
+			}
+		}
+	}
+}
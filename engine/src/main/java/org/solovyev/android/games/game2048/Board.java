@@ -0,0 +1,537 @@
+package org.solovyev.android.games.game2048;
+
+import com.google.common.base.Splitter;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static java.lang.Math.max;
+
+public class Board {
+
+	static final String JSON_SIZE = "size";
+	static final String JSON_CELLS = "cells";
+	static final String JSON_SEPARATOR_ROW = ";";
+	static final String JSON_SEPARATOR_CELL = ",";
+
+	@Nonnull
+	private final RandomSource random;
+
+	// exponents of 2 stored row by row, see Cell.NO_VALUE and Cell.WALL for special values. Arrays of the cells are
+	// exchanged by swap(Board)
+	byte[] cells;
+	final int size;
+	boolean withWalls;
+
+	// indices of empty cells in no particular order, only first emptyCount elements are used
+	@Nonnull
+	private int[] emptyCells;
+
+	// position of each cell in emptyCells, -1 if cell is not empty
+	@Nonnull
+	private int[] emptyPositions;
+
+	private int emptyCount;
+
+	// number of adjacent cell pairs where one cell can move to another: cells with equal values or a cell with value
+	// next to an empty cell. Game is over when there are no such pairs
+	private int equalPairs;
+	private int freePairs;
+
+	// Zobrist hash, see Zobrist
+	@Nonnull
+	private final long[] keys;
+	private long hash;
+
+	// computed on demand, reset when a wall is placed or removed
+	@Nullable
+	private Segments segments;
+
+	private Board(int size, @Nonnull RandomSource random) {
+		this(size, random, Zobrist.getKeys(size));
+	}
+
+	private Board(int size, @Nonnull RandomSource random, @Nonnull long[] keys) {
+		this.size = size;
+		this.random = random;
+		this.keys = keys;
+		this.cells = new byte[size * size];
+		this.emptyCells = new int[size * size];
+		this.emptyPositions = new int[size * size];
+	}
+
+	@Nonnull
+	public static Board newBoard(int size, boolean withWalls) {
+		return newBoard(size, withWalls, RandomSources.newRandomSource());
+	}
+
+	@Nonnull
+	public static Board newBoard(int size, boolean withWalls, long seed) {
+		return newBoard(size, withWalls, RandomSources.newRandomSource(seed));
+	}
+
+	/**
+	 * @param random source of new cells' positions, owned by the board from now on
+	 */
+	@Nonnull
+	public static Board newBoard(int size, boolean withWalls, @Nonnull RandomSource random) {
+		final Board board = new Board(size, random);
+		board.reset(withWalls);
+		return board;
+	}
+
+	@Nonnull
+	public Board copy() {
+		// keys are immutable and shared by all the boards of the same size
+		final Board copy = new Board(size, random.copy(), keys);
+		copy.copyFrom(this);
+		return copy;
+	}
+
+	/**
+	 * Makes this board equal to <var>that</var>, both boards must have the same size. Random source of this board is
+	 * kept.
+	 */
+	public void copyFrom(@Nonnull Board that) {
+		if (that.size != size) {
+			throw new IllegalArgumentException("Can't copy board of size " + that.size + " to board of size " + size);
+		}
+		System.arraycopy(that.cells, 0, cells, 0, cells.length);
+		System.arraycopy(that.emptyCells, 0, emptyCells, 0, that.emptyCount);
+		System.arraycopy(that.emptyPositions, 0, emptyPositions, 0, emptyPositions.length);
+		emptyCount = that.emptyCount;
+		equalPairs = that.equalPairs;
+		freePairs = that.freePairs;
+		hash = that.hash;
+		withWalls = that.withWalls;
+		segments = that.segments;
+	}
+
+	/**
+	 * Exchanges the cells of this board and <var>that</var> in constant time, both boards must have the same size.
+	 * Random sources are kept.
+	 */
+	void swap(@Nonnull Board that) {
+		if (that.size != size) {
+			throw new IllegalArgumentException("Can't swap board of size " + that.size + " with board of size " + size);
+		}
+		final byte[] cells = this.cells;
+		this.cells = that.cells;
+		that.cells = cells;
+		final int[] emptyCells = this.emptyCells;
+		this.emptyCells = that.emptyCells;
+		that.emptyCells = emptyCells;
+		final int[] emptyPositions = this.emptyPositions;
+		this.emptyPositions = that.emptyPositions;
+		that.emptyPositions = emptyPositions;
+		final int emptyCount = this.emptyCount;
+		this.emptyCount = that.emptyCount;
+		that.emptyCount = emptyCount;
+		final int equalPairs = this.equalPairs;
+		this.equalPairs = that.equalPairs;
+		that.equalPairs = equalPairs;
+		final int freePairs = this.freePairs;
+		this.freePairs = that.freePairs;
+		that.freePairs = freePairs;
+		final long hash = this.hash;
+		this.hash = that.hash;
+		that.hash = hash;
+		final boolean withWalls = this.withWalls;
+		this.withWalls = that.withWalls;
+		that.withWalls = withWalls;
+		final Segments segments = this.segments;
+		this.segments = that.segments;
+		that.segments = segments;
+	}
+
+	@Nonnull
+	public Board random(boolean withWalls) {
+		reset(withWalls);
+
+		final int empty = emptyCount;
+		for (int i = 0; i < empty; i++) {
+			addNewRandomCells(1, (byte) (1 + random.nextInt(14)));
+		}
+
+		return this;
+	}
+
+	@Nonnull
+	public Board reset(boolean withWalls) {
+		this.withWalls = withWalls;
+
+		Arrays.fill(cells, Cell.NO_VALUE);
+		onCellsChanged();
+
+		addNewRandomCells(2);
+		if (withWalls) {
+			addNewRandomCells(max(2, size * size / 6), Cell.WALL);
+		}
+
+		return this;
+	}
+
+	@Nonnull
+	public List<CellChange.New> addNewRandomCell() {
+		return addNewRandomCells(1);
+	}
+
+	@Nonnull
+	private List<CellChange.New> addNewRandomCells(int count) {
+		return addNewRandomCells(count, Cell.START_EXPONENT);
+	}
+
+	@Nonnull
+	private List<CellChange.New> addNewRandomCells(int count, byte exponent) {
+		if (emptyCount == 0) {
+			return Collections.emptyList();
+		} else {
+			final List<CellChange.New> newCells = new ArrayList<CellChange.New>(count);
+			do {
+				final int index = emptyCells[random.nextInt(emptyCount)];
+				setCell(index, exponent);
+				newCells.add(new CellChange.New(Cell.valueOf(exponent), newPosition(index)));
+				count--;
+			} while (count > 0 && emptyCount > 0);
+			return newCells;
+		}
+	}
+
+	private void setCell(int index, byte cell) {
+		final boolean wasEmpty = cells[index] == Cell.NO_VALUE;
+		final boolean empty = cell == Cell.NO_VALUE;
+		assert cell < Zobrist.EXPONENTS + Cell.WALL;
+		if (cell == Cell.WALL || cells[index] == Cell.WALL) {
+			segments = null;
+		}
+		countPairs(index, -1);
+		hash ^= keys[index * Zobrist.EXPONENTS + cells[index] - Cell.WALL] ^ keys[index * Zobrist.EXPONENTS + cell - Cell.WALL];
+		cells[index] = cell;
+		countPairs(index, 1);
+		if (wasEmpty != empty) {
+			if (empty) {
+				emptyPositions[index] = emptyCount;
+				emptyCells[emptyCount] = index;
+				emptyCount++;
+			} else {
+				// the last empty cell takes the place of the removed one
+				final int position = emptyPositions[index];
+				emptyCount--;
+				final int lastIndex = emptyCells[emptyCount];
+				emptyCells[position] = lastIndex;
+				emptyPositions[lastIndex] = position;
+				emptyPositions[index] = -1;
+			}
+		}
+	}
+
+	/**
+	 * Adds <var>sign</var> to the pair counters for each pair the cell with the given <var>index</var> is part of
+	 */
+	private void countPairs(int index, int sign) {
+		final int row = index / size;
+		final int col = index - row * size;
+		if (row > 0) {
+			countPair(cells[index], cells[index - size], sign);
+		}
+		if (row < size - 1) {
+			countPair(cells[index], cells[index + size], sign);
+		}
+		if (col > 0) {
+			countPair(cells[index], cells[index - 1], sign);
+		}
+		if (col < size - 1) {
+			countPair(cells[index], cells[index + 1], sign);
+		}
+	}
+
+	private void countPair(byte cell, byte adjacentCell, int sign) {
+		if (cell > Cell.NO_VALUE) {
+			if (adjacentCell == cell) {
+				equalPairs += sign;
+			} else if (adjacentCell == Cell.NO_VALUE) {
+				freePairs += sign;
+			}
+		} else if (cell == Cell.NO_VALUE && adjacentCell > Cell.NO_VALUE) {
+			freePairs += sign;
+		}
+	}
+
+	/**
+	 * Rebuilds all the state derived from {@link #cells}, must be called after the cells were changed directly
+	 */
+	private void onCellsChanged() {
+		segments = null;
+		emptyCount = 0;
+		equalPairs = 0;
+		freePairs = 0;
+		hash = keys[keys.length - 1];
+		for (int i = 0; i < cells.length; i++) {
+			hash ^= keys[i * Zobrist.EXPONENTS + cells[i] - Cell.WALL];
+			if (cells[i] == Cell.NO_VALUE) {
+				emptyPositions[i] = emptyCount;
+				emptyCells[emptyCount] = i;
+				emptyCount++;
+			} else {
+				emptyPositions[i] = -1;
+			}
+
+			// each pair is counted once: with the cell to the right and with the cell below
+			if (i % size < size - 1) {
+				countPair(cells[i], cells[i + 1], 1);
+			}
+			if (i + size < cells.length) {
+				countPair(cells[i], cells[i + size], 1);
+			}
+		}
+	}
+
+	/**
+	 * @return true if at least one cell can be moved in some direction
+	 */
+	public boolean canMove() {
+		return equalPairs > 0 || freePairs > 0;
+	}
+
+	boolean updateBoard(int from, int to, @Nonnull Moves moves) {
+		if (from != to) {
+			final byte s = cells[from];
+			final byte d = cells[to];
+			if (s == d) {
+				setCell(to, (byte) (s + 1));
+				setCell(from, Cell.NO_VALUE);
+				moves.add(from, to, cells[to], true);
+				return true;
+			} else if (d == Cell.NO_VALUE) {
+				setCell(to, s);
+				setCell(from, Cell.NO_VALUE);
+				moves.add(from, to, s, false);
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Nonnull
+	Segments getSegments() {
+		if (segments == null) {
+			segments = Segments.newSegments(cells, size);
+		}
+		return segments;
+	}
+
+	@Nonnull
+	Position newPosition(int index) {
+		return new Position(index / size, index % size);
+	}
+
+	@Nonnull
+	public List<CellChange.New> prepareNextTurn(@Nonnull Difficulty difficulty) {
+		return addNewRandomCells(difficulty.getNewCellCount(size));
+	}
+
+	@Nonnull
+	public JSONObject toJson() throws JSONException {
+		final JSONObject result = new JSONObject();
+		result.put(JSON_SIZE, size);
+		final StringBuilder sb = new StringBuilder(size * size * 3);
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				sb.append(JSON_SEPARATOR_ROW);
+			}
+			for (int j = 0; j < size; j++) {
+				if (j > 0) {
+					sb.append(JSON_SEPARATOR_CELL);
+				}
+				sb.append(Cell.toValue(cells[i * size + j]));
+			}
+		}
+		result.put(JSON_CELLS, sb.toString());
+		return result;
+	}
+
+	@Nonnull
+	public static Board fromJson(@Nonnull JSONObject json) throws JSONException {
+		final int size = json.getInt(JSON_SIZE);
+		final Board board = new Board(size, RandomSources.newRandomSource());
+		board.withWalls = false;
+		final String cells = json.getString(JSON_CELLS);
+
+		int i = 0;
+		final Splitter rowSplitter = Splitter.on(JSON_SEPARATOR_ROW);
+		final Splitter cellSplitter = Splitter.on(JSON_SEPARATOR_CELL);
+		for (String row : rowSplitter.split(cells)) {
+			int j = 0;
+			for (String cell : cellSplitter.split(row)) {
+				if (i >= size || j >= size) {
+					throw new JSONException("Too many cells for size " + size);
+				}
+				final byte exponent = Cell.toExponent(Long.parseLong(cell));
+				board.cells[i * size + j] = exponent;
+				board.withWalls |= exponent == Cell.WALL;
+				j++;
+			}
+			i++;
+		}
+		board.onCellsChanged();
+		return board;
+	}
+
+	/**
+	 * Same as {@link #fromJson(JSONObject)} but the cells are read directly from <var>json</var> (characters from
+	 * <var>start</var> to <var>end</var> contain the value of {@link #JSON_CELLS} without quotes), no substrings are
+	 * created
+	 */
+	@Nonnull
+	static Board fromJsonCells(int size, @Nonnull String json, int start, int end) throws JSONException {
+		if (size < 1) {
+			throw new JSONException("Invalid size " + size);
+		}
+		final Board board = new Board(size, RandomSources.newRandomSource());
+		board.withWalls = false;
+
+		final char rowSeparator = JSON_SEPARATOR_ROW.charAt(0);
+		final char cellSeparator = JSON_SEPARATOR_CELL.charAt(0);
+		int i = 0;
+		int j = 0;
+		int pos = start;
+		while (true) {
+			final boolean negative = pos < end && json.charAt(pos) == '-';
+			if (negative) {
+				pos++;
+			}
+			final int digits = pos;
+			long value = 0;
+			for (char c; pos < end && (c = json.charAt(pos)) >= '0' && c <= '9'; pos++) {
+				if (value > Long.MAX_VALUE / 10) {
+					throw new JSONException("Invalid cell value at " + digits);
+				}
+				value = value * 10 + (c - '0');
+			}
+			if (pos == digits) {
+				throw new JSONException("Invalid cell value at " + digits);
+			}
+			if (i >= size || j >= size) {
+				throw new JSONException("Too many cells for size " + size);
+			}
+
+			final byte exponent;
+			try {
+				exponent = Cell.toExponent(negative ? -value : value);
+			} catch (IllegalArgumentException e) {
+				throw new JSONException(e.getMessage());
+			}
+			board.cells[i * size + j] = exponent;
+			board.withWalls |= exponent == Cell.WALL;
+
+			if (pos == end) {
+				break;
+			}
+			final char separator = json.charAt(pos++);
+			if (separator == cellSeparator) {
+				j++;
+			} else if (separator == rowSeparator) {
+				i++;
+				j = 0;
+			} else {
+				throw new JSONException("Unexpected character " + separator + " at " + (pos - 1));
+			}
+		}
+		board.onCellsChanged();
+		return board;
+	}
+
+	/**
+	 * @param cells exponents of the cells row by row, copied
+	 * @return board with the given cells and a new random source
+	 */
+	@Nonnull
+	static Board fromCells(int size, boolean withWalls, @Nonnull byte[] cells) {
+		if (cells.length != size * size) {
+			throw new IllegalArgumentException("Expected " + size * size + " cells, got " + cells.length);
+		}
+		final Board board = new Board(size, RandomSources.newRandomSource());
+		board.withWalls = withWalls;
+		for (int i = 0; i < cells.length; i++) {
+			final byte cell = cells[i];
+			if (cell < Cell.WALL || cell >= Zobrist.EXPONENTS + Cell.WALL) {
+				throw new IllegalArgumentException("Invalid exponent " + cell);
+			}
+			board.cells[i] = cell;
+		}
+		board.onCellsChanged();
+		return board;
+	}
+
+	@Nonnull
+	public Cell getCell(int i, int j) {
+		return Cell.valueOf(cells[i * size + j]);
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return 64-bit hash of cells (including walls) and size of the board, it is maintained incrementally and is the
+	 * same for equal boards in every run
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	@Nonnull
+	RandomSource getRandom() {
+		return random;
+	}
+
+	int getEmptyCount() {
+		return emptyCount;
+	}
+
+	/**
+	 * @return index of <var>i</var>-th empty cell, i in [0, {@link #getEmptyCount()})
+	 */
+	int getEmptyCell(int i) {
+		return emptyCells[i];
+	}
+
+	/**
+	 * @return number of adjacent pairs of cells with equal values
+	 */
+	int getEqualPairs() {
+		return equalPairs;
+	}
+
+	/**
+	 * Same as {@link #prepareNextTurn(Difficulty)} but doesn't allocate
+	 *
+	 * @param indices indices of the new cells are written here
+	 * @return number of new cells
+	 */
+	int spawnRandom(int count, @Nonnull int[] indices) {
+		int spawned = 0;
+		while (spawned < count && emptyCount > 0) {
+			final int index = emptyCells[random.nextInt(emptyCount)];
+			setCell(index, Cell.START_EXPONENT);
+			indices[spawned++] = index;
+		}
+		return spawned;
+	}
+
+	/**
+	 * Puts a new cell to the empty cell with the given <var>index</var>, same as {@link #prepareNextTurn(Difficulty)}
+	 * but without randomness
+	 */
+	void spawn(int index) {
+		assert cells[index] == Cell.NO_VALUE;
+		setCell(index, Cell.START_EXPONENT);
+	}
+}
@@ -0,0 +1,119 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Key of a board which is the same for all its symmetric boards (see {@link Symmetry}): the smallest of the keys of
+ * its 8 transformations. 4x4 boards are keyed by their {@link BitBoard} packing, others by {@link Board#getHash()}.
+ * <p/>
+ * Reusable and not thread-safe: {@link #of(Board)} overwrites the previous result.
+ */
+public final class CanonicalPosition {
+
+	@Nonnull
+	private static final Symmetry[] symmetries = Symmetry.values();
+
+	private long key;
+
+	@Nonnull
+	private Symmetry symmetry = Symmetry.identity;
+
+	// indices of the transformed cells for each symmetry for boards of size
+	private int size;
+	@Nonnull
+	private int[][] indices = new int[0][];
+	@Nonnull
+	private long[] keys = new long[0];
+
+	private CanonicalPosition() {
+	}
+
+	@Nonnull
+	public static CanonicalPosition newCanonicalPosition() {
+		return new CanonicalPosition();
+	}
+
+	@Nonnull
+	public CanonicalPosition of(@Nonnull Board board) {
+		final long packed = BitBoard.isSupported(board) ? BitBoard.pack(board.cells) : BitBoard.NO_BOARD;
+		if (packed != BitBoard.NO_BOARD) {
+			ofPacked(packed);
+		} else {
+			ofHash(board);
+		}
+		return this;
+	}
+
+	private void ofPacked(long packed) {
+		key = packed;
+		symmetry = Symmetry.identity;
+		for (int s = 1; s < symmetries.length; s++) {
+			final long candidate = symmetries[s].apply(packed);
+			if (candidate < key) {
+				key = candidate;
+				symmetry = symmetries[s];
+			}
+		}
+	}
+
+	private void ofHash(@Nonnull Board board) {
+		prepare(board.size);
+
+		key = board.getHash();
+		symmetry = Symmetry.identity;
+		final byte[] cells = board.cells;
+		for (int s = 1; s < symmetries.length; s++) {
+			final int[] transformed = indices[s];
+			// same as Board.getHash() of the transformed board
+			long candidate = keys[keys.length - 1];
+			for (int i = 0; i < cells.length; i++) {
+				candidate ^= keys[transformed[i] * Zobrist.EXPONENTS + cells[i] - Cell.WALL];
+			}
+			if (candidate < key) {
+				key = candidate;
+				symmetry = symmetries[s];
+			}
+		}
+	}
+
+	private void prepare(int size) {
+		if (this.size != size) {
+			this.size = size;
+			this.keys = Zobrist.getKeys(size);
+			this.indices = new int[symmetries.length][size * size];
+			for (int s = 0; s < symmetries.length; s++) {
+				for (int i = 0; i < size * size; i++) {
+					indices[s][i] = symmetries[s].apply(i, size);
+				}
+			}
+		}
+	}
+
+	public long getKey() {
+		return key;
+	}
+
+	/**
+	 * @return symmetry which transforms the board to its canonical form
+	 */
+	@Nonnull
+	public Symmetry getSymmetry() {
+		return symmetry;
+	}
+
+	/**
+	 * @return direction on the canonical board corresponding to <var>direction</var> on the original board
+	 */
+	@Nonnull
+	public Direction toCanonical(@Nonnull Direction direction) {
+		return symmetry.apply(direction);
+	}
+
+	/**
+	 * @return direction on the original board corresponding to <var>direction</var> on the canonical board
+	 */
+	@Nonnull
+	public Direction fromCanonical(@Nonnull Direction direction) {
+		return symmetry.inverse().apply(direction);
+	}
+}
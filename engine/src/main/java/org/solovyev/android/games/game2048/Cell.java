@@ -0,0 +1,71 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Read-only view of a board cell. Board stores cells as exponents of 2 (see {@link Board#cells}), instances of this
+ * class are shared and never allocated after class initialization.
+ */
+public final class Cell {
+
+	static final byte NO_VALUE = 0;
+	static final byte WALL = -1;
+	static final byte START_EXPONENT = 1;
+
+	@Nonnull
+	private static final Cell[] cells = new Cell[Byte.MAX_VALUE - WALL + 1];
+
+	static {
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = new Cell((byte) (i + WALL));
+		}
+	}
+
+	private final byte exponent;
+
+	private Cell(byte exponent) {
+		this.exponent = exponent;
+	}
+
+	@Nonnull
+	static Cell valueOf(byte exponent) {
+		return cells[exponent - WALL];
+	}
+
+	public long getValue() {
+		return toValue(exponent);
+	}
+
+	public int getExponent() {
+		return exponent;
+	}
+
+	public boolean hasValue() {
+		return exponent > NO_VALUE;
+	}
+
+	public boolean isEmpty() {
+		return exponent == NO_VALUE;
+	}
+
+	public boolean isWall() {
+		return exponent == WALL;
+	}
+
+	static long toValue(byte exponent) {
+		return exponent > NO_VALUE ? 1L << exponent : exponent;
+	}
+
+	static byte toExponent(long value) {
+		if (value > NO_VALUE) {
+			if (Long.bitCount(value) != 1) {
+				throw new IllegalArgumentException("Not a power of 2: " + value);
+			}
+			return (byte) Long.numberOfTrailingZeros(value);
+		} else if (value == NO_VALUE || value == WALL) {
+			return (byte) value;
+		} else {
+			throw new IllegalArgumentException("Invalid cell value: " + value);
+		}
+	}
+}
@@ -1,7 +1,5 @@
 package org.solovyev.android.games.game2048;
 
-import android.graphics.Point;
-
 import javax.annotation.Nonnull;
 
 public abstract class CellChange {
@@ -16,9 +14,9 @@ public abstract class CellChange {
 	public static final class New extends CellChange {
 
 		@Nonnull
-		public final Point position;
+		public final Position position;
 
-		public New(@Nonnull Cell cell, @Nonnull Point position) {
+		public New(@Nonnull Cell cell, @Nonnull Position position) {
 			super(cell);
 			this.position = position;
 		}
@@ -26,12 +24,12 @@ public abstract class CellChange {
 	public static class Move extends CellChange {
 
 		@Nonnull
-		public final Point from;
+		public final Position from;
 
 		@Nonnull
-		public final Point to;
+		public final Position to;
 
-		public Move(@Nonnull Cell cell, @Nonnull Point from, @Nonnull Point to) {
+		public Move(@Nonnull Cell cell, @Nonnull Position from, @Nonnull Position to) {
 			super(cell);
 			this.from = from;
 			this.to = to;
@@ -43,8 +41,8 @@ public abstract class CellChange {
 			public final Cell removedCell;
 
 			public Merge(@Nonnull Cell cell,
-						 @Nonnull Point from,
-						 @Nonnull Point to,
+						 @Nonnull Position from,
+						 @Nonnull Position to,
 						 @Nonnull Cell removedCell) {
 				super(cell, from, to);
 				this.removedCell = removedCell;
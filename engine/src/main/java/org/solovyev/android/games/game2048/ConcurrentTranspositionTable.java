@@ -0,0 +1,73 @@
+package org.solovyev.android.games.game2048;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe and lock-free table for parallel search.
+ * <p/>
+ * Each entry is two longs: <code>key ^ data</code> and <code>data</code>, where data contains the value (as float) and
+ * the depth. Entries are written without any synchronization, so a reader may see the halves of two different writes:
+ * such an entry doesn't pass the XOR check and is treated as missing. Each bucket has two entries: the first one is
+ * replaced only by deeper (or equally deep) results, the second one is always replaced.
+ */
+final class ConcurrentTranspositionTable implements TranspositionTable {
+
+	private static final int ENTRY = 2;
+	private static final int BUCKET = 2 * ENTRY;
+
+	private static final long DEPTH_MASK = 0xFF;
+
+	private final int shift;
+
+	// AtomicLongArray instead of long[] as writes of longs are not atomic on some 32-bit VMs
+	private final AtomicLongArray entries;
+
+	private ConcurrentTranspositionTable(int buckets) {
+		if (buckets < 2 || Integer.bitCount(buckets) != 1) {
+			throw new IllegalArgumentException("Number of buckets must be a power of 2 greater than 1: " + buckets);
+		}
+		this.shift = 64 - Integer.numberOfTrailingZeros(buckets);
+		this.entries = new AtomicLongArray(buckets * BUCKET);
+	}
+
+	static ConcurrentTranspositionTable newConcurrentTranspositionTable(int buckets) {
+		return new ConcurrentTranspositionTable(buckets);
+	}
+
+	@Override
+	public double get(long key, int depth) {
+		final int bucket = bucket(key);
+		for (int i = bucket; i < bucket + BUCKET; i += ENTRY) {
+			final long data = entries.get(i + 1);
+			// depth 0 marks an empty entry
+			if ((entries.get(i) ^ data) == key && (data & DEPTH_MASK) >= depth && (data & DEPTH_MASK) > 0) {
+				return Float.intBitsToFloat((int) (data >>> 32));
+			}
+		}
+		return Double.NaN;
+	}
+
+	@Override
+	public void put(long key, int depth, double value) {
+		final long data = ((long) Float.floatToRawIntBits((float) value) << 32) | (depth & DEPTH_MASK);
+		final int bucket = bucket(key);
+		// a shallower result never replaces a deeper one, even of the same key: it goes to the second entry
+		final int i = depth >= (entries.get(bucket + 1) & DEPTH_MASK) ? bucket : bucket + ENTRY;
+		entries.lazySet(i, key ^ data);
+		entries.lazySet(i + 1, data);
+	}
+
+	/**
+	 * Must not be called concurrently with other methods
+	 */
+	@Override
+	public void clear() {
+		for (int i = 0; i < entries.length(); i++) {
+			entries.set(i, 0);
+		}
+	}
+
+	private int bucket(long key) {
+		return (int) ((key * 0x9e3779b97f4a7c15L) >>> shift) * BUCKET;
+	}
+}
@@ -0,0 +1,15 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Estimates how good a position is for the player, used by AI players. Symmetric positions (see {@link Symmetry})
+ * must have equal values. Implementations must be thread-safe to be used by {@link ParallelExpectimax}.
+ */
+public interface Evaluator {
+
+	/**
+	 * @return non-negative value of <var>board</var>, bigger is better. Value of a lost game is 0.
+	 */
+	double evaluate(@Nonnull Board board);
+}
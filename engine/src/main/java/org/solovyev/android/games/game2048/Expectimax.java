@@ -0,0 +1,328 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import static java.lang.Math.min;
+
+/**
+ * Iterative deepening expectimax: player nodes take the best of all the moves, chance nodes average over the new
+ * cells' positions as placed by {@link Board#prepareNextTurn(Difficulty)}. If there are too many positions (big
+ * boards or several new cells per turn) a random sample of them is used, otherwise all of them are enumerated. Search
+ * stops at the time budget and the best move of the deepest completed iteration is returned.
+ * <p/>
+ * Not thread-safe, see {@link HintEngine} for searching in background and {@link ParallelExpectimax} for searching on
+ * several cores.
+ */
+public final class Expectimax {
+
+	static final int MAX_DEPTH = 16;
+	static final int DEFAULT_MAX_CHANCE_OUTCOMES = 16;
+
+	private static final int TIME_CHECK_NODES = 16;
+
+	@Nonnull
+	private static final Direction[] directions = Direction.values();
+
+	@Nonnull
+	private final Evaluator evaluator;
+
+	@Nonnull
+	private final TranspositionTable table;
+
+	@Nonnull
+	private final RandomSource random = RandomSources.newRandomSource();
+
+	@Nonnull
+	private final Moves moves = Moves.newMoves();
+
+	// symmetric positions share entries in the table
+	@Nonnull
+	private final CanonicalPosition canonical = CanonicalPosition.newCanonicalPosition();
+
+	private int maxChanceOutcomes = DEFAULT_MAX_CHANCE_OUTCOMES;
+
+	// position after the move on each ply
+	@Nonnull
+	private final Game[] afterMove = new Game[MAX_DEPTH];
+
+	// position after new cells were added on each ply
+	@Nonnull
+	private final Board[] afterSpawn = new Board[MAX_DEPTH];
+
+	// empty cells of afterMove on each ply
+	@Nonnull
+	private final int[][] emptyCells = new int[MAX_DEPTH][];
+
+	@Nonnull
+	private Difficulty difficulty = Difficulty.normal;
+
+	private long deadline;
+	private int nodes;
+
+	private Expectimax(@Nonnull Evaluator evaluator, @Nonnull TranspositionTable table) {
+		this.evaluator = evaluator;
+		this.table = table;
+	}
+
+	@Nonnull
+	public static Expectimax newExpectimax(@Nonnull Evaluator evaluator) {
+		return new Expectimax(evaluator, SimpleTranspositionTable.newSimpleTranspositionTable(1 << 16));
+	}
+
+	@Nonnull
+	static Expectimax newExpectimax(@Nonnull Evaluator evaluator, @Nonnull TranspositionTable table) {
+		return new Expectimax(evaluator, table);
+	}
+
+	/**
+	 * @param maxChanceOutcomes maximum number of the new cells' positions evaluated in chance nodes
+	 */
+	public void setMaxChanceOutcomes(int maxChanceOutcomes) {
+		this.maxChanceOutcomes = maxChanceOutcomes;
+	}
+
+	/**
+	 * @return best move found within <var>budgetNanos</var> or null if there is no move. Returns early if the thread
+	 * is interrupted.
+	 */
+	@Nullable
+	public Direction findBestMove(@Nonnull Game game, long budgetNanos) {
+		return findBestMove(game, budgetNanos, null);
+	}
+
+	/**
+	 * Same as {@link #findBestMove(Game, long)} but also reports the best move of every completed iteration to
+	 * <var>listener</var> (unless the thread is interrupted)
+	 */
+	@Nullable
+	public Direction findBestMove(@Nonnull Game game, long budgetNanos, @Nullable Listener listener) {
+		final Board board = game.getBoard();
+		prepare(board.size, game.getDifficulty());
+
+		Direction best = null;
+		deadline = Long.MAX_VALUE;
+		for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+			try {
+				best = searchRoot(board, depth);
+			} catch (TimeoutException e) {
+				break;
+			}
+			if (best == null) {
+				// no moves at all
+				break;
+			}
+			if (listener != null && !Thread.currentThread().isInterrupted()) {
+				listener.onBestMove(best, depth);
+			}
+			// first iteration is always completed so that there is some move to return
+			if (depth == 1) {
+				deadline = System.nanoTime() + budgetNanos;
+			}
+			if (System.nanoTime() >= deadline || Thread.currentThread().isInterrupted()) {
+				break;
+			}
+		}
+		return best;
+	}
+
+	void prepare(int size, @Nonnull Difficulty difficulty) {
+		this.difficulty = difficulty;
+		if (afterMove[0] == null || afterMove[0].getBoard().size != size) {
+			for (int i = 0; i < MAX_DEPTH; i++) {
+				afterMove[i] = Game.newGame(size, false, difficulty);
+				afterSpawn[i] = Board.newBoard(size, false);
+				emptyCells[i] = new int[size * size];
+			}
+		}
+	}
+
+	void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+
+	@Nullable
+	private Direction searchRoot(@Nonnull Board board, int depth) {
+		Direction best = null;
+		double bestValue = -1;
+		for (Direction direction : directions) {
+			final Game game = afterMove[0];
+			game.getBoard().copyFrom(board);
+			game.go(direction, moves);
+			if (!moves.isEmpty()) {
+				final double value = chanceNode(0, depth);
+				if (value > bestValue) {
+					bestValue = value;
+					best = direction;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return value of <var>board</var> searched <var>depth</var> moves ahead, see {@link #prepare(int, Difficulty)}
+	 * and {@link #setDeadline(long)}
+	 */
+	double maxNode(@Nonnull Board board, int depth) {
+		return maxNode(board, 0, depth);
+	}
+
+	private double maxNode(@Nonnull Board board, int ply, int depth) {
+		double best = 0;
+		for (Direction direction : directions) {
+			final Game game = afterMove[ply];
+			game.getBoard().copyFrom(board);
+			game.go(direction, moves);
+			if (!moves.isEmpty()) {
+				best = Math.max(best, chanceNode(ply, depth));
+			}
+		}
+		// no moves => lost game => 0
+		return best;
+	}
+
+	/**
+	 * Evaluates {@link #afterMove} of <var>ply</var> searching <var>depth</var> moves ahead
+	 */
+	private double chanceNode(int ply, int depth) {
+		final Board board = afterMove[ply].getBoard();
+		if (depth <= 1 || ply + 1 >= MAX_DEPTH) {
+			return evaluator.evaluate(board);
+		}
+
+		checkTime();
+
+		final long key = getKey(canonical, board, difficulty);
+		final double cached = table.get(key, depth);
+		if (!Double.isNaN(cached)) {
+			return cached;
+		}
+
+		final int[] empty = emptyCells[ply];
+		final int emptyCount = board.getEmptyCount();
+		for (int i = 0; i < emptyCount; i++) {
+			empty[i] = board.getEmptyCell(i);
+		}
+
+		final int newCells = getNewCells(board, difficulty);
+		final int outcomes = getOutcomes(emptyCount, newCells, maxChanceOutcomes);
+		final Board child = afterSpawn[ply];
+		double sum = 0;
+		for (int i = 0; i < outcomes; i++) {
+			child.copyFrom(board);
+			spawn(child, i, outcomes, empty, emptyCount, newCells, random);
+			sum += maxNode(child, ply + 1, depth - 1);
+		}
+
+		final double value = sum / outcomes;
+		table.put(key, depth, value);
+		return value;
+	}
+
+	private void checkTime() {
+		nodes++;
+		if (nodes % TIME_CHECK_NODES == 0) {
+			if (System.nanoTime() >= deadline || Thread.currentThread().isInterrupted()) {
+				throw TimeoutException.instance;
+			}
+		}
+	}
+
+	/**
+	 * @return key of the chance node after a move to <var>board</var>, symmetric positions share keys
+	 */
+	static long getKey(@Nonnull CanonicalPosition canonical, @Nonnull Board board, @Nonnull Difficulty difficulty) {
+		// values for different difficulties may be stored in the same table
+		return canonical.of(board).getKey() ^ (difficulty.ordinal() * 0x9e3779b97f4a7c15L);
+	}
+
+	static int getNewCells(@Nonnull Board board, @Nonnull Difficulty difficulty) {
+		return min(difficulty.getNewCellCount(board.size), board.getEmptyCount());
+	}
+
+	/**
+	 * @return number of outcomes evaluated in a chance node: all the combinations of <var>newCells</var> positions
+	 * among <var>emptyCount</var> cells if there are not too many of them, sample of <var>maxOutcomes</var> random
+	 * outcomes otherwise
+	 */
+	static int getOutcomes(int emptyCount, int newCells, int maxOutcomes) {
+		return min(getCombinations(emptyCount, newCells, maxOutcomes), maxOutcomes);
+	}
+
+	/**
+	 * @return number of combinations of <var>k</var> elements out of <var>n</var> or <var>max</var> + 1 if there are
+	 * more than <var>max</var> of them
+	 */
+	static int getCombinations(int n, int k, int max) {
+		if (k > n) {
+			return 0;
+		}
+		long result = 1;
+		// C(n, i) = C(n, i - 1) * (n - i + 1) / i is exact and never decreases for i <= n / 2
+		for (int i = 1; i <= min(k, n - k); i++) {
+			result = result * (n - i + 1) / i;
+			if (result > max) {
+				return max + 1;
+			}
+		}
+		return (int) result;
+	}
+
+	/**
+	 * Adds new cells of <var>outcome</var> to <var>board</var>: <var>outcome</var>-th combination of the empty cells in
+	 * lexicographic order if all of them are evaluated, random one otherwise
+	 *
+	 * @param empty empty cells of the board, shuffled by this method if outcomes are sampled
+	 */
+	static void spawn(@Nonnull Board board, int outcome, int outcomes, @Nonnull int[] empty, int emptyCount, int newCells, @Nonnull RandomSource random) {
+		if (getCombinations(emptyCount, newCells, outcomes) == outcomes) {
+			// all combinations are equally probable
+			int rest = outcome;
+			int c = 0;
+			for (int j = 0; j < newCells; j++, c++) {
+				// skip the combinations starting with c: there are C(emptyCount - c - 1, newCells - j - 1) of them
+				int skipped;
+				while (rest >= (skipped = getCombinations(emptyCount - c - 1, newCells - j - 1, outcomes))) {
+					rest -= skipped;
+					c++;
+				}
+				board.spawn(empty[c]);
+			}
+		} else {
+			// partial Fisher-Yates shuffle: first newCells elements of empty are a random sample
+			for (int j = 0; j < newCells; j++) {
+				final int k = j + random.nextInt(emptyCount - j);
+				final int index = empty[k];
+				empty[k] = empty[j];
+				empty[j] = index;
+				board.spawn(index);
+			}
+		}
+	}
+
+	public interface Listener {
+
+		/**
+		 * Called on the searching thread, moves of deeper searches are reported later
+		 */
+		void onBestMove(@Nonnull Direction direction, int depth);
+	}
+
+	static final class TimeoutException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		@Nonnull
+		static final TimeoutException instance = new TimeoutException();
+
+		private TimeoutException() {
+		}
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			// thrown on every timeout, stack trace is never used
+			return this;
+		}
+	}
+}
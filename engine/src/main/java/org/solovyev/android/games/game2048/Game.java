@@ -0,0 +1,311 @@
+package org.solovyev.android.games.game2048;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.solovyev.android.games.game2048.Board.newBoard;
+import static org.solovyev.android.games.game2048.Score.newScore;
+
+public class Game {
+
+	static final String JSON_BOARD = "board";
+	static final String JSON_SCORE = "score";
+	static final String JSON_DIFFICULTY = "difficulty";
+	static final String JSON_START_DATE = "startDate";
+
+	// see setVerifyGameOver(boolean), on by default in tests run with assertions
+	private static volatile boolean verifyGameOver = Game.class.desiredAssertionStatus();
+
+	@Nonnull
+	private Board board;
+
+	@Nonnull
+	private Score score;
+
+	@Nonnull
+	private Difficulty difficulty;
+
+	@Nonnull
+	private Date startDate;
+
+	private Game(@Nonnull Board board, @Nonnull Score score, @Nonnull Date startDate, @Nonnull Difficulty difficulty) {
+		this.board = board;
+		this.score = score;
+		this.startDate = startDate;
+		this.difficulty = difficulty;
+	}
+
+	private Game(@Nonnull Board board, @Nonnull Score score, @Nonnull Difficulty difficulty) {
+		this(board, score, new Date(), difficulty);
+	}
+
+	@Nonnull
+	public static Game newGame(int size, boolean withWalls, @Nonnull Difficulty difficulty) {
+		return new Game(newBoard(size, withWalls), newScore(), difficulty);
+	}
+
+	/**
+	 * @return game which always plays the same way for the same <var>seed</var> and the same moves
+	 */
+	@Nonnull
+	public static Game newGame(int size, boolean withWalls, @Nonnull Difficulty difficulty, long seed) {
+		return new Game(newBoard(size, withWalls, seed), newScore(), difficulty);
+	}
+
+	@Nonnull
+	public static Game newGame(int size, boolean withWalls, @Nonnull Difficulty difficulty, @Nonnull RandomSource random) {
+		return new Game(newBoard(size, withWalls, random), newScore(), difficulty);
+	}
+
+	/**
+	 * @return game played on <var>board</var>
+	 */
+	@Nonnull
+	static Game newGame(@Nonnull Board board, @Nonnull Difficulty difficulty) {
+		return new Game(board, newScore(), difficulty);
+	}
+
+	@Nonnull
+	static Game newGame(@Nonnull Board board, @Nonnull Score score, @Nonnull Date startDate, @Nonnull Difficulty difficulty) {
+		return new Game(board, score, startDate, difficulty);
+	}
+
+	@Nonnull
+	public Game copy() {
+		return new Game(board.copy(), score.copy(), startDate, difficulty);
+	}
+
+	@Nonnull
+	public Board getBoard() {
+		return board;
+	}
+
+	@Nonnull
+	public Score getScore() {
+		return score;
+	}
+
+	@Nonnull
+	public Date getStartDate() {
+		return startDate;
+	}
+
+	@Nonnull
+	public Difficulty getDifficulty() {
+		return difficulty;
+	}
+
+	@Nonnull
+	public List<CellChange.Move> go(@Nonnull Direction direction) {
+		final Moves moves = Moves.newMoves();
+		go(direction, moves);
+
+		final List<CellChange.Move> changes = new ArrayList<CellChange.Move>(moves.size());
+		for (int i = 0; i < moves.size(); i++) {
+			final Cell cell = Cell.valueOf((byte) moves.getExponent(i));
+			final Position from = board.newPosition(moves.getFrom(i));
+			final Position to = board.newPosition(moves.getTo(i));
+			if (moves.isMerge(i)) {
+				changes.add(new CellChange.Move.Merge(cell, from, to, Cell.valueOf((byte) (moves.getExponent(i) - 1))));
+			} else {
+				changes.add(new CellChange.Move(cell, from, to));
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * Same as {@link #go(Direction)} but doesn't allocate: all the moves are written to <var>moves</var> (its previous
+	 * content is discarded).
+	 */
+	public void go(@Nonnull Direction direction, @Nonnull Moves moves) {
+		final int size = board.size;
+		moves.clear(size * size);
+
+		if (!BitBoard.isSupported(board) || !BitBoard.go(board, direction, moves)) {
+			goSegments(moves, direction);
+		}
+
+		score.onMoveChanged(moves);
+	}
+
+	/**
+	 * Moves the cells of every segment of the board (see {@link Segments}) towards its first cell. Short segments are
+	 * moved via {@link BitBoard}'s tables.
+	 */
+	void goSegments(@Nonnull Moves moves, @Nonnull Direction direction) {
+		final Segments segments = board.getSegments();
+		final int d = direction.ordinal();
+		final int[] firsts = segments.firsts[d];
+		final int[] lengths = segments.lengths[d];
+		final int step = segments.steps[d];
+		for (int s = 0; s < firsts.length; s++) {
+			if (!BitBoard.goSegment(board, firsts[s], step, lengths[s], moves)) {
+				goSegment(moves, firsts[s], step, lengths[s]);
+			}
+		}
+	}
+
+	/**
+	 * Moves the cells <code>first + k * step</code> for k in [0, length) towards the first one, there are no walls
+	 * between them
+	 */
+	private void goSegment(@Nonnull Moves moves, int first, int step, int length) {
+		final byte[] cells = board.cells;
+		// position to which the next cell will be moved
+		int target = first;
+		// last cell which didn't move or was moved in this segment, -1 if there is none
+		int last = -1;
+		boolean lastMerged = false;
+		for (int k = 0, i = first; k < length; k++, i += step) {
+			final byte cell = cells[i];
+			if (cell != Cell.NO_VALUE) {
+				if (last >= 0 && !lastMerged && cells[last] == cell) {
+					board.updateBoard(i, last, moves);
+					lastMerged = true;
+				} else {
+					board.updateBoard(i, target, moves);
+					last = target;
+					lastMerged = false;
+					target += step;
+				}
+			}
+		}
+	}
+
+	@Nonnull
+	public List<CellChange.New> prepareNextTurn() {
+		return board.prepareNextTurn(difficulty);
+	}
+
+	@Nonnull
+	public String toJson() throws JSONException {
+		final JSONObject json = new JSONObject();
+		json.put(JSON_DIFFICULTY, difficulty.name());
+		json.put(JSON_BOARD, board.toJson());
+		json.put(JSON_SCORE, score.toJson());
+		json.put(JSON_START_DATE, startDate.getTime());
+		return json.toString();
+	}
+
+	/**
+	 * @return game restored from <var>state</var> or null if <var>state</var> doesn't contain a game
+	 */
+	@Nullable
+	public static Game fromJson(@Nonnull String state) throws JSONException {
+		final JSONObject json = new JSONObject(state);
+		if (json.has(JSON_DIFFICULTY) &&
+				json.has(JSON_BOARD) &&
+				json.has(JSON_SCORE)) {
+			final Difficulty difficulty = Difficulty.valueOf(json.getString(JSON_DIFFICULTY));
+			final Board board = Board.fromJson(json.getJSONObject(JSON_BOARD));
+			final Score score = Score.fromJson(json.getJSONObject(JSON_SCORE));
+
+			final Date startDate;
+			if (json.has(JSON_START_DATE)) {
+				final long startTime = json.getLong(JSON_START_DATE);
+				if (startTime > 0) {
+					startDate = new Date(startTime);
+				} else {
+					startDate = new Date();
+				}
+			} else {
+				startDate = new Date();
+			}
+
+			return new Game(board, score, startDate, difficulty);
+		}
+
+		return null;
+	}
+
+	public boolean hasSettings(int size, boolean withWalls, @Nonnull Difficulty difficulty) {
+		if(difficulty == this.difficulty) {
+			if(size == this.board.size) {
+				if(withWalls == this.board.withWalls) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	public void reset(int size, boolean withWalls, @Nonnull Difficulty difficulty) {
+		// new board continues the random sequence of the old one
+		this.board = newBoard(size, withWalls, board.getRandom());
+		this.score = newScore();
+		this.startDate = new Date();
+		this.difficulty = difficulty;
+	}
+
+	public boolean isOver() {
+		final boolean over = !board.canMove();
+		if (verifyGameOver && over != isOverFullScan()) {
+			throw new IllegalStateException("Counters of the board don't match its cells, over=" + over + ": " + Arrays.toString(board.cells));
+		}
+		return over;
+	}
+
+	/**
+	 * @param verify true if {@link #isOver()} should check the counters of the board by a full scan and throw
+	 *               {@link IllegalStateException} if they are wrong. Slow, for debug builds.
+	 */
+	public static void setVerifyGameOver(boolean verify) {
+		verifyGameOver = verify;
+	}
+
+	/**
+	 * Same as {@link #isOver()} but checks every cell instead of relying on the counters of the board
+	 */
+	boolean isOverFullScan() {
+		final int size = board.size;
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				if (canMove(i, j, board.cells)) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	private boolean canMove(int i, int j, @Nonnull byte[] cells) {
+		final int size = board.size;
+		final byte cell = cells[i * size + j];
+		if (cell == Cell.NO_VALUE || cell == Cell.WALL) {
+			// only cells with values can move
+			return false;
+		} else {
+			if (i < size - 1 && canMoveTo(cell, cells[(i + 1) * size + j])) {
+				return true;
+			}
+
+			if (i > 0 && canMoveTo(cell, cells[(i - 1) * size + j])) {
+				return true;
+			}
+
+			if (j < size - 1 && canMoveTo(cell, cells[i * size + j + 1])) {
+				return true;
+			}
+
+			if (j > 0 && canMoveTo(cell, cells[i * size + j - 1])) {
+				return true;
+			}
+
+			return false;
+		}
+	}
+
+	private static boolean canMoveTo(byte cell, byte adjacentCell) {
+		return adjacentCell == Cell.NO_VALUE || adjacentCell == cell;
+	}
+}
@@ -0,0 +1,161 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.zip.CRC32;
+
+/**
+ * Binary format of a saved {@link Game}, much smaller and faster than {@link Game#toJson()}. Big-endian:
+ * <pre>
+ * int   magic
+ * byte  version
+ * byte  size
+ * byte  difficulty (ordinal)
+ * byte  flags: 1 = with walls, 2 = exponents are stored as bytes (as nibbles otherwise)
+ * long  score
+ * long  start date (milliseconds)
+ * wall bitmap: bit (i % 8) of byte (i / 8) is set if cell i is a wall
+ * exponents of the cells row by row (0 for walls), two cells per byte (first one in the low nibble) or one
+ * int   CRC32 of all the previous bytes
+ * </pre>
+ */
+public final class GameSnapshot {
+
+	private static final int MAGIC = 0x47323438;
+	private static final byte VERSION = 1;
+
+	private static final int FLAG_WITH_WALLS = 1;
+	private static final int FLAG_BYTE_EXPONENTS = 2;
+
+	// magic, version, size, difficulty, flags, score, start date
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+	private static final int CHECKSUM_SIZE = 4;
+
+	private static final int MAX_NIBBLE = 0xF;
+
+	@Nonnull
+	private static final Difficulty[] difficulties = Difficulty.values();
+
+	private GameSnapshot() {
+		throw new AssertionError();
+	}
+
+	@Nonnull
+	public static byte[] toBytes(@Nonnull Game game) {
+		final Board board = game.getBoard();
+		final byte[] cells = board.cells;
+		final int count = cells.length;
+
+		boolean byteExponents = false;
+		for (byte cell : cells) {
+			byteExponents |= cell > MAX_NIBBLE;
+		}
+
+		final int wallsSize = getWallsSize(count);
+		final int exponentsSize = getExponentsSize(count, byteExponents);
+		final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + wallsSize + exponentsSize + CHECKSUM_SIZE);
+		buffer.putInt(MAGIC);
+		buffer.put(VERSION);
+		buffer.put((byte) board.size);
+		// order of Difficulty's constants must not change
+		buffer.put((byte) game.getDifficulty().ordinal());
+		buffer.put((byte) ((board.withWalls ? FLAG_WITH_WALLS : 0) | (byteExponents ? FLAG_BYTE_EXPONENTS : 0)));
+		buffer.putLong(game.getScore().getPoints());
+		buffer.putLong(game.getStartDate().getTime());
+
+		final byte[] bytes = buffer.array();
+		final int walls = buffer.position();
+		final int exponents = walls + wallsSize;
+		for (int i = 0; i < count; i++) {
+			final byte cell = cells[i];
+			if (cell == Cell.WALL) {
+				bytes[walls + i / 8] |= 1 << (i % 8);
+			} else if (byteExponents) {
+				bytes[exponents + i] = cell;
+			} else {
+				bytes[exponents + i / 2] |= cell << (4 * (i % 2));
+			}
+		}
+
+		buffer.position(exponents + exponentsSize);
+		buffer.putInt(getChecksum(bytes, buffer.position()));
+		return bytes;
+	}
+
+	/**
+	 * @return true if <var>bytes</var> look like a snapshot (they still may be corrupted)
+	 */
+	public static boolean isSnapshot(@Nonnull byte[] bytes) {
+		return bytes.length >= HEADER_SIZE + CHECKSUM_SIZE && ByteBuffer.wrap(bytes).getInt(0) == MAGIC;
+	}
+
+	@Nonnull
+	public static Game fromBytes(@Nonnull byte[] bytes) throws IOException {
+		if (!isSnapshot(bytes)) {
+			throw new IOException("Not a game snapshot");
+		}
+
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		buffer.position(4);
+		final int version = buffer.get();
+		if (version != VERSION) {
+			throw new IOException("Unsupported version " + version);
+		}
+		final int size = buffer.get() & 0xFF;
+		final int difficulty = buffer.get() & 0xFF;
+		final int flags = buffer.get();
+		final long points = buffer.getLong();
+		final long startTime = buffer.getLong();
+
+		final int count = size * size;
+		final boolean byteExponents = (flags & FLAG_BYTE_EXPONENTS) != 0;
+		final int walls = buffer.position();
+		final int exponents = walls + getWallsSize(count);
+		final int end = exponents + getExponentsSize(count, byteExponents);
+		if (size < 1 || bytes.length != end + CHECKSUM_SIZE) {
+			throw new IOException("Invalid size " + size);
+		}
+		if (buffer.getInt(end) != getChecksum(bytes, end)) {
+			throw new IOException("Checksum mismatch");
+		}
+		if (difficulty >= difficulties.length) {
+			throw new IOException("Invalid difficulty " + difficulty);
+		}
+
+		final byte[] cells = new byte[count];
+		for (int i = 0; i < count; i++) {
+			if ((bytes[walls + i / 8] & (1 << (i % 8))) != 0) {
+				cells[i] = Cell.WALL;
+			} else if (byteExponents) {
+				cells[i] = bytes[exponents + i];
+			} else {
+				cells[i] = (byte) ((bytes[exponents + i / 2] >>> (4 * (i % 2))) & MAX_NIBBLE);
+			}
+		}
+
+		final Board board;
+		try {
+			board = Board.fromCells(size, (flags & FLAG_WITH_WALLS) != 0, cells);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e.getMessage());
+		}
+		final Date startDate = startTime > 0 ? new Date(startTime) : new Date();
+		return Game.newGame(board, Score.newScore(points), startDate, difficulties[difficulty]);
+	}
+
+	private static int getWallsSize(int count) {
+		return (count + 7) / 8;
+	}
+
+	private static int getExponentsSize(int count, boolean byteExponents) {
+		return byteExponents ? count : (count + 1) / 2;
+	}
+
+	private static int getChecksum(@Nonnull byte[] bytes, int length) {
+		final CRC32 crc = new CRC32();
+		crc.update(bytes, 0, length);
+		return (int) crc.getValue();
+	}
+}
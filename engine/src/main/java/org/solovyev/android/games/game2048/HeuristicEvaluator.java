@@ -0,0 +1,72 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Hand-tuned evaluation: rewards empty cells and possible merges, penalizes lines which are not monotonic. Walls are
+ * treated as empty cells in lines.
+ */
+public final class HeuristicEvaluator implements Evaluator {
+
+	private static final double BASE = 100000;
+	private static final double EMPTY_WEIGHT = 270;
+	private static final double MERGE_WEIGHT = 700;
+	private static final double MONOTONICITY_WEIGHT = 47;
+
+	@Nonnull
+	private static final Evaluator instance = new HeuristicEvaluator();
+
+	// exponent^4 by exponent
+	@Nonnull
+	private static final double[] powers = new double[Byte.MAX_VALUE + 1];
+
+	static {
+		for (int i = 0; i < powers.length; i++) {
+			powers[i] = Math.pow(i, 4);
+		}
+	}
+
+	private HeuristicEvaluator() {
+	}
+
+	@Nonnull
+	public static Evaluator getInstance() {
+		return instance;
+	}
+
+	@Override
+	public double evaluate(@Nonnull Board board) {
+		final int size = board.size;
+		double monotonicity = 0;
+		for (int line = 0; line < size; line++) {
+			monotonicity += getMonotonicityPenalty(board.cells, line * size, 1, size);
+			monotonicity += getMonotonicityPenalty(board.cells, line, size, size);
+		}
+
+		final double value = BASE
+				+ EMPTY_WEIGHT * board.getEmptyCount()
+				+ MERGE_WEIGHT * board.getEqualPairs()
+				- MONOTONICITY_WEIGHT * monotonicity;
+		// even the worst position is better than a lost game
+		return max(value, Double.MIN_VALUE);
+	}
+
+	private static double getMonotonicityPenalty(@Nonnull byte[] cells, int first, int step, int size) {
+		double increasing = 0;
+		double decreasing = 0;
+		double previous = powers[max(cells[first], 0)];
+		for (int k = 1, i = first + step; k < size; k++, i += step) {
+			final double current = powers[max(cells[i], 0)];
+			if (previous > current) {
+				decreasing += previous - current;
+			} else {
+				increasing += current - previous;
+			}
+			previous = current;
+		}
+		return min(increasing, decreasing);
+	}
+}
@@ -2,9 +2,9 @@ package org.solovyev.android.games.game2048;
 
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.solovyev.common.collections.Collections;
 
 import javax.annotation.Nonnull;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 
@@ -90,7 +90,7 @@ public final class HighScore {
 		return score.hasPoints();
 	}
 
-	public int getPoints() {
+	public long getPoints() {
 		return score.getPoints();
 	}
 
@@ -102,12 +102,12 @@ public final class HighScore {
 	private static final class HighScoreComparator implements Comparator<HighScore> {
 
 		@Nonnull
-		private static final Comparator<HighScore> instance = Collections.reversed(new HighScoreComparator());
+		private static final Comparator<HighScore> instance = Collections.reverseOrder(new HighScoreComparator());
 
 		@Override
 		public int compare(@Nonnull HighScore lhs, @Nonnull HighScore rhs) {
-			final int lPoints = lhs.getPoints();
-			final int rPoints = rhs.getPoints();
+			final long lPoints = lhs.getPoints();
+			final long rPoints = rhs.getPoints();
 			if (lPoints > rPoints) {
 				return 1;
 			} else if (lPoints < rPoints) {
@@ -0,0 +1,95 @@
+package org.solovyev.android.games.game2048;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.Math.min;
+import static java.util.Collections.sort;
+import static org.solovyev.android.games.game2048.HighScore.newHighScore;
+import static org.solovyev.android.games.game2048.HighScore.newNoHighScore;
+
+public final class HighScores {
+
+	private static final int SIZE = 5;
+
+	@Nonnull
+	private final List<HighScore> highScores;
+
+	private HighScores() {
+		this(new ArrayList<HighScore>(SIZE));
+	}
+
+	private HighScores(@Nonnull List<HighScore> highScores) {
+		this.highScores = highScores;
+		sort(this.highScores, HighScore.getComparator());
+	}
+
+	@Nonnull
+	public HighScores copy() {
+		return new HighScores(new ArrayList<HighScore>(highScores));
+	}
+
+	@Nonnull
+	public HighScore getHighestScore() {
+		if (highScores.size() > 0) {
+			return highScores.get(0);
+		} else {
+			return newNoHighScore();
+		}
+	}
+
+	public boolean addHighScore(@Nonnull Game game) {
+		return addHighScore(newHighScore(game));
+	}
+
+	private boolean addHighScore(@Nonnull HighScore score) {
+		if (!score.hasPoints()) {
+			return false;
+		}
+
+		highScores.add(score);
+		sort(highScores, HighScore.getComparator());
+
+		if (highScores.size() > SIZE) {
+			final HighScore oldScore = highScores.remove(highScores.size() - 1);
+			return oldScore != score;
+		}
+
+		return true;
+	}
+
+	@Nonnull
+	public static HighScores newHighScores() {
+		return new HighScores();
+	}
+
+	@Nonnull
+	public static HighScores fromJson(@Nonnull String state) throws JSONException {
+		final JSONArray json = new JSONArray(state);
+
+		final List<HighScore> highScores = new ArrayList<HighScore>(json.length());
+		for (int i = 0; i < min(json.length(), SIZE); i++) {
+			highScores.add(HighScore.fromJson(json.optJSONObject(i)));
+		}
+
+		return new HighScores(highScores);
+	}
+
+	@Nonnull
+	public String toJson() throws JSONException {
+		final JSONArray json = new JSONArray();
+		for (int i = 0; i < highScores.size(); i++) {
+			json.put(i, highScores.get(i).toJson());
+		}
+		return json.toString();
+	}
+
+	@Nonnull
+	public final List<HighScore> asList() {
+		return new ArrayList<HighScore>(this.highScores);
+	}
+}
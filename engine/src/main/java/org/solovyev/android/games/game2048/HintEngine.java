@@ -0,0 +1,101 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link Expectimax} on a background thread so that the caller (e.g. the UI thread) is never blocked by search.
+ * Hints can be started as soon as a new turn is prepared so that the search uses the time the user thinks about the
+ * move, see {@link #startHints(Game, long, Expectimax.Listener)}.
+ */
+public final class HintEngine {
+
+	public static final long DEFAULT_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+	@Nonnull
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(@Nonnull Runnable r) {
+			final Thread thread = new Thread(r, "hints");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+	});
+
+	// used only by the executor's thread
+	@Nonnull
+	private final Expectimax expectimax;
+
+	private final long budgetNanos;
+
+	// search started by startHints, guarded by this
+	@Nullable
+	private Future<?> hints;
+
+	private HintEngine(@Nonnull Evaluator evaluator, long budgetNanos) {
+		this.expectimax = Expectimax.newExpectimax(evaluator);
+		this.budgetNanos = budgetNanos;
+	}
+
+	@Nonnull
+	public static HintEngine newHintEngine() {
+		return new HintEngine(HeuristicEvaluator.getInstance(), DEFAULT_BUDGET_NANOS);
+	}
+
+	@Nonnull
+	public static HintEngine newHintEngine(@Nonnull Evaluator evaluator, long budgetNanos) {
+		return new HintEngine(evaluator, budgetNanos);
+	}
+
+	/**
+	 * Copies <var>game</var> on the calling thread (the caller must guarantee that the game is not modified during
+	 * this call) and searches for the best move in background.
+	 *
+	 * @return best move, null if there are no moves. Cancelling the future stops the search.
+	 */
+	@Nonnull
+	public Future<Direction> findBestMove(@Nonnull Game game) {
+		final Game snapshot = game.copy();
+		return executor.submit(new Callable<Direction>() {
+			@Override
+			public Direction call() {
+				return expectimax.findBestMove(snapshot, budgetNanos);
+			}
+		});
+	}
+
+	/**
+	 * Cancels the previous hints, copies <var>game</var> on the calling thread (the caller must guarantee that the game
+	 * is not modified during this call) and searches for the best move in background reporting better moves found by
+	 * deeper searches to <var>listener</var>. Search stops after <var>budgetNanos</var> or if {@link #cancelHints()}
+	 * is called, e.g. when the game's board changes.
+	 */
+	public synchronized void startHints(@Nonnull Game game, final long budgetNanos, @Nonnull final Expectimax.Listener listener) {
+		cancelHints();
+		final Game snapshot = game.copy();
+		hints = executor.submit(new Runnable() {
+			@Override
+			public void run() {
+				expectimax.findBestMove(snapshot, budgetNanos, listener);
+			}
+		});
+	}
+
+	public synchronized void cancelHints() {
+		if (hints != null) {
+			hints.cancel(true);
+			hints = null;
+		}
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+}
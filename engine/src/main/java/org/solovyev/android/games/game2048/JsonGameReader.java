@@ -0,0 +1,275 @@
+package org.solovyev.android.games.game2048;
+
+import org.json.JSONException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Date;
+
+/**
+ * Reads games saved by {@link Game#toJson()} in one pass over the characters: unlike {@link Game#fromJson(String)} it
+ * doesn't build a tree of {@link org.json.JSONObject}s and doesn't create a string per cell, the cells are written to
+ * the board directly (see {@link Board#fromJsonCells(int, String, int, int)}). Unknown fields are skipped, keys and
+ * string values with escape sequences are not expected (they are never written).
+ */
+public final class JsonGameReader {
+
+	@Nonnull
+	private static final Difficulty[] difficulties = Difficulty.values();
+
+	@Nonnull
+	private final String json;
+
+	private int pos;
+
+	private JsonGameReader(@Nonnull String json) {
+		this.json = json;
+	}
+
+	/**
+	 * Same as {@link Game#fromJson(String)}
+	 *
+	 * @return game restored from <var>json</var> or null if <var>json</var> doesn't contain a game
+	 */
+	@Nullable
+	public static Game read(@Nonnull String json) throws JSONException {
+		final JsonGameReader reader = new JsonGameReader(json);
+		final Game game = reader.readGame();
+		reader.readEnd();
+		return game;
+	}
+
+	/**
+	 * Same as {@link Board#fromJson(org.json.JSONObject)} applied to <var>json</var>
+	 */
+	@Nonnull
+	public static Board readBoard(@Nonnull String json) throws JSONException {
+		final JsonGameReader reader = new JsonGameReader(json);
+		final Board board = reader.readBoardObject();
+		reader.readEnd();
+		return board;
+	}
+
+	@Nullable
+	private Game readGame() throws JSONException {
+		Difficulty difficulty = null;
+		Board board = null;
+		Score score = null;
+		long startTime = 0;
+
+		read('{');
+		for (boolean first = true; nextKey(first); first = false) {
+			final int keyStart = pos + 1;
+			final int keyEnd = readString();
+			read(':');
+			if (matches(Game.JSON_DIFFICULTY, keyStart, keyEnd)) {
+				difficulty = readDifficulty();
+			} else if (matches(Game.JSON_BOARD, keyStart, keyEnd)) {
+				board = readBoardObject();
+			} else if (matches(Game.JSON_SCORE, keyStart, keyEnd)) {
+				score = readScore();
+			} else if (matches(Game.JSON_START_DATE, keyStart, keyEnd)) {
+				startTime = readLong();
+			} else {
+				skipValue();
+			}
+		}
+
+		if (difficulty == null || board == null || score == null) {
+			return null;
+		}
+		final Date startDate = startTime > 0 ? new Date(startTime) : new Date();
+		return Game.newGame(board, score, startDate, difficulty);
+	}
+
+	@Nonnull
+	private Board readBoardObject() throws JSONException {
+		int size = -1;
+		// cells may come before size: they are parsed in the end
+		int cellsStart = -1;
+		int cellsEnd = -1;
+
+		read('{');
+		for (boolean first = true; nextKey(first); first = false) {
+			final int keyStart = pos + 1;
+			final int keyEnd = readString();
+			read(':');
+			if (matches(Board.JSON_SIZE, keyStart, keyEnd)) {
+				size = (int) readLong();
+			} else if (matches(Board.JSON_CELLS, keyStart, keyEnd)) {
+				skipWhitespace();
+				cellsStart = pos + 1;
+				cellsEnd = readString();
+			} else {
+				skipValue();
+			}
+		}
+
+		if (size < 0) {
+			throw new JSONException("No " + Board.JSON_SIZE + " in board");
+		}
+		if (cellsStart < 0) {
+			throw new JSONException("No " + Board.JSON_CELLS + " in board");
+		}
+		return Board.fromJsonCells(size, json, cellsStart, cellsEnd);
+	}
+
+	@Nonnull
+	private Score readScore() throws JSONException {
+		Score score = null;
+		read('{');
+		for (boolean first = true; nextKey(first); first = false) {
+			final int keyStart = pos + 1;
+			final int keyEnd = readString();
+			read(':');
+			if (matches(Score.JSON_POINTS, keyStart, keyEnd)) {
+				score = Score.newScore(readLong());
+			} else {
+				skipValue();
+			}
+		}
+		if (score == null) {
+			throw new JSONException("No " + Score.JSON_POINTS + " in score");
+		}
+		return score;
+	}
+
+	@Nonnull
+	private Difficulty readDifficulty() throws JSONException {
+		skipWhitespace();
+		final int start = pos + 1;
+		final int end = readString();
+		for (Difficulty difficulty : difficulties) {
+			if (matches(difficulty.name(), start, end)) {
+				return difficulty;
+			}
+		}
+		throw new JSONException("Unknown difficulty at " + start);
+	}
+
+	private long readLong() throws JSONException {
+		skipWhitespace();
+		final boolean negative = pos < json.length() && json.charAt(pos) == '-';
+		if (negative) {
+			pos++;
+		}
+		final int digits = pos;
+		long value = 0;
+		for (char c; pos < json.length() && (c = json.charAt(pos)) >= '0' && c <= '9'; pos++) {
+			if (value > Long.MAX_VALUE / 10) {
+				throw new JSONException("Number is too big at " + digits);
+			}
+			value = value * 10 + (c - '0');
+		}
+		if (pos == digits) {
+			throw new JSONException("Number expected at " + digits);
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Reads a string starting at {@link #pos}
+	 *
+	 * @return position of the closing quote, {@link #pos} is moved after it
+	 */
+	private int readString() throws JSONException {
+		read('"');
+		for (; pos < json.length(); pos++) {
+			final char c = json.charAt(pos);
+			if (c == '\\') {
+				pos++;
+			} else if (c == '"') {
+				return pos++;
+			}
+		}
+		throw new JSONException("Unterminated string");
+	}
+
+	private void skipValue() throws JSONException {
+		skipWhitespace();
+		if (pos >= json.length()) {
+			throw new JSONException("Value expected");
+		}
+		final char c = json.charAt(pos);
+		if (c == '"') {
+			readString();
+		} else if (c == '{') {
+			pos++;
+			for (boolean first = true; nextKey(first); first = false) {
+				readString();
+				read(':');
+				skipValue();
+			}
+		} else if (c == '[') {
+			pos++;
+			skipWhitespace();
+			if (pos < json.length() && json.charAt(pos) == ']') {
+				pos++;
+				return;
+			}
+			while (true) {
+				skipValue();
+				skipWhitespace();
+				if (pos < json.length() && json.charAt(pos) == ',') {
+					pos++;
+				} else {
+					read(']');
+					return;
+				}
+			}
+		} else {
+			// number, true, false or null
+			final int start = pos;
+			while (pos < json.length() && "{}[]:,\" \t\r\n".indexOf(json.charAt(pos)) < 0) {
+				pos++;
+			}
+			if (pos == start) {
+				throw new JSONException("Unexpected character " + c + " at " + pos);
+			}
+		}
+	}
+
+	/**
+	 * Moves to the next key of the current object, {@link #pos} is moved to its opening quote
+	 *
+	 * @param first true if no keys of the object were read yet
+	 * @return false if the object ended
+	 */
+	private boolean nextKey(boolean first) throws JSONException {
+		skipWhitespace();
+		if (pos < json.length() && json.charAt(pos) == '}') {
+			pos++;
+			return false;
+		}
+		if (!first) {
+			read(',');
+			skipWhitespace();
+		}
+		return true;
+	}
+
+	private boolean matches(@Nonnull String key, int start, int end) {
+		return end - start == key.length() && json.regionMatches(start, key, 0, key.length());
+	}
+
+	private void read(char c) throws JSONException {
+		skipWhitespace();
+		if (pos >= json.length() || json.charAt(pos) != c) {
+			throw new JSONException("Expected " + c + " at " + pos);
+		}
+		pos++;
+	}
+
+	private void readEnd() throws JSONException {
+		skipWhitespace();
+		if (pos != json.length()) {
+			throw new JSONException("Unexpected character " + json.charAt(pos) + " at " + pos);
+		}
+	}
+
+	private void skipWhitespace() {
+		while (pos < json.length() && json.charAt(pos) <= ' ') {
+			pos++;
+		}
+	}
+}
@@ -0,0 +1,447 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static java.lang.Math.log;
+import static java.lang.Math.max;
+import static java.lang.Math.sqrt;
+
+/**
+ * Monte Carlo tree search with random playouts. Suits big boards and {@link Difficulty#hard} where the number of the
+ * new cells' positions makes {@link Expectimax} shallow.
+ * <p/>
+ * Tree parallelism: all the threads grow one tree, nodes are updated with atomics. A thread going through a node adds
+ * a virtual loss to it so that other threads prefer other branches until the playout is finished. Chance nodes keep
+ * at most {@link #setMaxChanceChildren(int)} outcomes (progressive widening), the whole tree is limited by
+ * {@link #setMaxNodes(int)} nodes: when it's full playouts start from the leaves without expanding them.
+ * <p/>
+ * Value of a move is the average number of points collected from it till the end of a playout (playouts are cut after
+ * {@link #setMaxPlayoutMoves(int)} moves). One search at a time.
+ */
+public final class MonteCarloTreeSearch {
+
+	@Nonnull
+	private static final Direction[] directions = Direction.values();
+
+	private static final double EXPLORATION = 0.5;
+
+	// marks moves which don't change the board
+	@Nonnull
+	private static final ChanceNode ILLEGAL = new ChanceNode(0);
+
+	@Nonnull
+	private final ExecutorService executor;
+
+	private final int threads;
+
+	private volatile int maxNodes = 1 << 18;
+	private volatile int maxChanceChildren = 8;
+	private volatile int maxPlayoutMoves = 200;
+
+	// state of the current search
+	@Nonnull
+	private final AtomicInteger nodes = new AtomicInteger();
+	@Nonnull
+	private final AtomicLong playouts = new AtomicLong();
+	private volatile long deadline;
+	private volatile long lastPlayouts;
+	private volatile long lastNanos;
+
+	private MonteCarloTreeSearch(int threads) {
+		this.threads = threads;
+		this.executor = Executors.newFixedThreadPool(threads);
+	}
+
+	@Nonnull
+	public static MonteCarloTreeSearch newMonteCarloTreeSearch(int threads) {
+		return new MonteCarloTreeSearch(threads);
+	}
+
+	/**
+	 * @param maxNodes maximum number of nodes in the tree, each node takes about 100 bytes
+	 */
+	public void setMaxNodes(int maxNodes) {
+		this.maxNodes = maxNodes;
+	}
+
+	public void setMaxChanceChildren(int maxChanceChildren) {
+		this.maxChanceChildren = maxChanceChildren;
+	}
+
+	public void setMaxPlayoutMoves(int maxPlayoutMoves) {
+		this.maxPlayoutMoves = maxPlayoutMoves;
+	}
+
+	/**
+	 * @return most visited move after searching for <var>budgetNanos</var>, null if there are no moves or the thread was
+	 * interrupted
+	 */
+	@Nullable
+	public Direction findBestMove(@Nonnull Game game, long budgetNanos) {
+		final Board board = game.getBoard().copy();
+		if (!board.canMove()) {
+			return null;
+		}
+		final Difficulty difficulty = game.getDifficulty();
+		final DecisionNode root = new DecisionNode(null);
+
+		nodes.set(1);
+		playouts.set(0);
+		final long start = System.nanoTime();
+		deadline = start + budgetNanos;
+
+		final List<Callable<Void>> workers = new ArrayList<Callable<Void>>(threads);
+		for (int i = 0; i < threads; i++) {
+			workers.add(new Worker(root, board, difficulty));
+		}
+		try {
+			for (Future<Void> future : executor.invokeAll(workers)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			lastPlayouts = playouts.get();
+			lastNanos = System.nanoTime() - start;
+		}
+
+		Direction best = null;
+		int bestVisits = -1;
+		for (int i = 0; i < directions.length; i++) {
+			final ChanceNode child = root.children.get(i);
+			if (child != null && child != ILLEGAL && child.visits.get() > bestVisits) {
+				bestVisits = child.visits.get();
+				best = directions[i];
+			}
+		}
+		return best;
+	}
+
+	public long getLastPlayouts() {
+		return lastPlayouts;
+	}
+
+	public double getLastPlayoutsPerSecond() {
+		return lastNanos == 0 ? 0 : lastPlayouts * 1e9 / lastNanos;
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private boolean reserveNode() {
+		if (nodes.incrementAndGet() > maxNodes) {
+			nodes.decrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Position where the player moves
+	 */
+	private static final class DecisionNode {
+
+		// cells added to the parent's position to get this one
+		@Nullable
+		private final int[] spawned;
+
+		// by direction, null if not tried yet
+		@Nonnull
+		private final AtomicReferenceArray<ChanceNode> children = new AtomicReferenceArray<ChanceNode>(directions.length);
+
+		private DecisionNode(@Nullable int[] spawned) {
+			this.spawned = spawned;
+		}
+	}
+
+	/**
+	 * Position after the player's move, before new cells are added
+	 */
+	private static final class ChanceNode {
+
+		@Nonnull
+		private final AtomicInteger visits = new AtomicInteger();
+
+		@Nonnull
+		private final AtomicInteger virtualLosses = new AtomicInteger();
+
+		@Nonnull
+		private final AtomicLong points = new AtomicLong();
+
+		@Nonnull
+		private final AtomicReferenceArray<DecisionNode> children;
+
+		@Nonnull
+		private final AtomicInteger childrenCount = new AtomicInteger();
+
+		private ChanceNode(int maxChildren) {
+			this.children = new AtomicReferenceArray<DecisionNode>(maxChildren);
+		}
+
+		private double getValue() {
+			final int visits = this.visits.get() + virtualLosses.get();
+			return visits == 0 ? 0 : (double) points.get() / visits;
+		}
+	}
+
+	private final class Worker implements Callable<Void> {
+
+		@Nonnull
+		private final DecisionNode root;
+
+		@Nonnull
+		private final Board rootBoard;
+
+		@Nonnull
+		private final Difficulty difficulty;
+
+		@Nonnull
+		private final Game game;
+
+		@Nonnull
+		private final Board board;
+
+		// for checking moves without changing the board
+		@Nonnull
+		private final Game test;
+
+		@Nonnull
+		private final RandomSource random = RandomSources.newRandomSource();
+
+		@Nonnull
+		private final Moves moves = Moves.newMoves();
+
+		@Nonnull
+		private final int[] spawned;
+
+		// chance nodes on the path and points collected before each of them
+		@Nonnull
+		private final List<ChanceNode> path = new ArrayList<ChanceNode>();
+		@Nonnull
+		private long[] pathPoints = new long[16];
+
+		private Worker(@Nonnull DecisionNode root, @Nonnull Board rootBoard, @Nonnull Difficulty difficulty) {
+			this.root = root;
+			this.rootBoard = rootBoard;
+			this.difficulty = difficulty;
+			this.game = Game.newGame(rootBoard.size, false, difficulty);
+			this.board = game.getBoard();
+			this.test = Game.newGame(rootBoard.size, false, difficulty);
+			this.spawned = new int[rootBoard.size * rootBoard.size];
+		}
+
+		@Override
+		public Void call() {
+			do {
+				if (Thread.currentThread().isInterrupted()) {
+					break;
+				}
+				playout();
+				playouts.incrementAndGet();
+			} while (System.nanoTime() < deadline);
+			return null;
+		}
+
+		private void playout() {
+			board.copyFrom(rootBoard);
+			path.clear();
+			long points = 0;
+
+			DecisionNode node = root;
+			while (node != null) {
+				final int action = select(node);
+				if (action < 0) {
+					// no moves
+					break;
+				}
+
+				ChanceNode child = node.children.get(action);
+				final boolean expand = child == null;
+				if (expand) {
+					if (!reserveNode()) {
+						points += rollout(directions[action]);
+						break;
+					}
+					if (!node.children.compareAndSet(action, null, new ChanceNode(maxChanceChildren))) {
+						nodes.decrementAndGet();
+					}
+					child = node.children.get(action);
+				}
+
+				child.virtualLosses.incrementAndGet();
+				addToPath(child, points);
+				game.go(directions[action], moves);
+				points += moves.getPoints();
+
+				if (expand) {
+					board.spawnRandom(getNewCellCount(), spawned);
+					points += rollout(null);
+					break;
+				}
+				node = chance(child);
+				if (node == null) {
+					// tree is full
+					points += rollout(null);
+				}
+			}
+
+			for (int i = 0; i < path.size(); i++) {
+				final ChanceNode chanceNode = path.get(i);
+				chanceNode.points.addAndGet(points - pathPoints[i]);
+				chanceNode.visits.incrementAndGet();
+				chanceNode.virtualLosses.decrementAndGet();
+			}
+		}
+
+		private void addToPath(@Nonnull ChanceNode node, long points) {
+			if (path.size() == pathPoints.length) {
+				pathPoints = Arrays.copyOf(pathPoints, 2 * pathPoints.length);
+			}
+			pathPoints[path.size()] = points;
+			path.add(node);
+		}
+
+		/**
+		 * @return index of the direction to go from <var>node</var> (UCB1 with values normalized by the best value),
+		 * -1 if there are no moves
+		 */
+		private int select(@Nonnull DecisionNode node) {
+			int totalVisits = 0;
+			double maxValue = 0;
+			for (int i = 0; i < directions.length; i++) {
+				final ChanceNode child = node.children.get(i);
+				if (child == null) {
+					// untried moves go first
+					if (isLegal(i)) {
+						return i;
+					}
+					node.children.compareAndSet(i, null, ILLEGAL);
+				} else if (child != ILLEGAL) {
+					totalVisits += child.visits.get() + child.virtualLosses.get();
+					maxValue = max(maxValue, child.getValue());
+				}
+			}
+
+			int best = -1;
+			double bestScore = Double.NEGATIVE_INFINITY;
+			final double logVisits = log(max(totalVisits, 1));
+			for (int i = 0; i < directions.length; i++) {
+				final ChanceNode child = node.children.get(i);
+				if (child != null && child != ILLEGAL) {
+					final int visits = max(child.visits.get() + child.virtualLosses.get(), 1);
+					final double value = maxValue == 0 ? 0 : child.getValue() / maxValue;
+					final double score = value + EXPLORATION * sqrt(logVisits / visits);
+					if (score > bestScore) {
+						bestScore = score;
+						best = i;
+					}
+				}
+			}
+			return best;
+		}
+
+		private boolean isLegal(int action) {
+			test.getBoard().copyFrom(board);
+			test.go(directions[action], moves);
+			return !moves.isEmpty();
+		}
+
+		/**
+		 * Adds new cells to the board after the move of <var>node</var>
+		 *
+		 * @return next node, null if the tree is full
+		 */
+		@Nullable
+		private DecisionNode chance(@Nonnull ChanceNode node) {
+			final int count = node.childrenCount.get();
+			if (count >= node.children.length()) {
+				// all outcomes are known, choose one of them
+				final DecisionNode child = node.children.get(random.nextInt(node.children.length()));
+				if (child != null) {
+					for (int index : child.spawned) {
+						board.spawn(index);
+					}
+					return child;
+				}
+			}
+
+			final int newCells = board.spawnRandom(getNewCellCount(), spawned);
+			for (int i = 0; i < node.children.length(); i++) {
+				final DecisionNode child = node.children.get(i);
+				if (child != null && isSpawnedBy(child, newCells)) {
+					return child;
+				}
+			}
+
+			if (count < node.children.length() && reserveNode()) {
+				if (node.childrenCount.compareAndSet(count, count + 1)) {
+					final DecisionNode child = new DecisionNode(Arrays.copyOf(spawned, newCells));
+					node.children.set(count, child);
+					return child;
+				}
+				nodes.decrementAndGet();
+			}
+			return null;
+		}
+
+		private boolean isSpawnedBy(@Nonnull DecisionNode node, int newCells) {
+			// children of a chance node differ only by the new cells
+			if (node.spawned == null || node.spawned.length != newCells) {
+				return false;
+			}
+			for (int index : node.spawned) {
+				boolean found = false;
+				for (int i = 0; i < newCells; i++) {
+					found |= spawned[i] == index;
+				}
+				if (!found) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private int getNewCellCount() {
+			return difficulty.getNewCellCount(board.size);
+		}
+
+		/**
+		 * Plays random moves (starting with <var>first</var> if it's not null) until the game is over or the playout is
+		 * long enough
+		 *
+		 * @return points collected
+		 */
+		private long rollout(@Nullable Direction first) {
+			long points = 0;
+			if (first != null) {
+				game.go(first, moves);
+				points += moves.getPoints();
+				board.spawnRandom(getNewCellCount(), spawned);
+			}
+			for (int i = 0; i < maxPlayoutMoves && board.canMove(); i++) {
+				do {
+					game.go(directions[random.nextInt(directions.length)], moves);
+				} while (moves.isEmpty());
+				points += moves.getPoints();
+				board.spawnRandom(getNewCellCount(), spawned);
+			}
+			return points;
+		}
+	}
+}
@@ -0,0 +1,324 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import static java.lang.Math.max;
+
+/**
+ * Saves a game turn by turn: a {@link GameSnapshot} of the game is written from time to time (see
+ * {@link #checkpoint(Game)}) and every turn played after it is appended to a memory-mapped journal (see
+ * {@link #append(Game, Direction, List)}), which costs a few bytes per turn instead of rewriting the whole game. Data
+ * written to the mapped file survives the process being killed. The game is restored by replaying the journal on top of
+ * the snapshot, see {@link #restore()}.
+ * <p/>
+ * Snapshots are written in background by {@link WriteBehind}, so there are several journals: turns played after a
+ * checkpoint go to a new journal while the journals of the snapshot on disk and of the snapshots which may still be
+ * written are kept. These are at most three: the snapshot on disk, the one being written and the latest one waiting
+ * for the writer (older waiting snapshots are never written, see {@link WriteBehind#save(File, WriteBehind.Snapshot)}).
+ * Journal is compacted (a new snapshot is written and a new journal is started) when it is full.
+ * <p/>
+ * Journal's layout (big-endian):
+ * <pre>
+ * int   magic
+ * int   version
+ * long  hash of the board of the snapshot the journal continues
+ * long  generation: journals are numbered in the order they are started
+ * turns, each one:
+ * byte  direction ordinal + 1, written last so that 0 marks the end of the journal
+ * byte  number of the new cells
+ * char  index of each new cell
+ * int   low bits of the hash of the board after the turn
+ * </pre>
+ * Not thread-safe: calls must be serialized, e.g. by the lock of the game.
+ */
+public final class MoveJournal {
+
+	private static final int MAGIC = 0x4A323438;
+	private static final int VERSION = 2;
+
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+	private static final int BASE_HASH_POSITION = 8;
+	private static final int GENERATION_POSITION = 16;
+
+	// thousands of turns before compaction
+	private static final int CAPACITY = 64 * 1024;
+
+	// one more than the journals which may continue a snapshot on disk, see checkpoint(Game)
+	private static final int JOURNALS = 4;
+
+	@Nonnull
+	private static final Direction[] directions = Direction.values();
+
+	@Nonnull
+	private final File snapshotFile;
+
+	@Nonnull
+	private final File[] journalFiles;
+
+	@Nonnull
+	private final WriteBehind writer;
+
+	// elements are null until the journals are mapped
+	@Nonnull
+	private final MappedByteBuffer[] buffers = new MappedByteBuffer[JOURNALS];
+
+	// journal to which the turns are appended
+	private int current;
+
+	// generation of the last started journal
+	private long generation;
+
+	// position at which the next turn is written
+	private int end = HEADER_SIZE;
+
+	// journal continuing the snapshot on disk, set by the writer's thread
+	private volatile int saved;
+
+	// generation of saved, accessed by the writer's thread after restore()
+	private long savedGeneration;
+
+	// journal continuing the snapshot which is being written (or was written last), set by the writer's thread
+	private volatile int writing = -1;
+
+	private MoveJournal(@Nonnull File snapshotFile, @Nonnull File journalFile, @Nonnull WriteBehind writer) {
+		this.snapshotFile = snapshotFile;
+		this.journalFiles = new File[JOURNALS];
+		this.journalFiles[0] = journalFile;
+		for (int i = 1; i < JOURNALS; i++) {
+			this.journalFiles[i] = new File(journalFile.getPath() + "." + i);
+		}
+		this.writer = writer;
+	}
+
+	/**
+	 * Files are not accessed until the journal is used
+	 *
+	 * @param journalFile file of the first journal, the others are stored next to it with suffixes .1, .2 and so on
+	 * @param writer      writes the snapshots
+	 */
+	@Nonnull
+	public static MoveJournal newMoveJournal(@Nonnull File snapshotFile, @Nonnull File journalFile, @Nonnull WriteBehind writer) {
+		return new MoveJournal(snapshotFile, journalFile, writer);
+	}
+
+	/**
+	 * Restores the game from the snapshot and the turns of the latest journal continuing it. Turns which can't be
+	 * replayed (e.g. a turn is incomplete) are dropped together with all the following ones. Must be called before
+	 * the other methods.
+	 *
+	 * @return restored game or null if there is no snapshot
+	 */
+	@Nullable
+	public Game restore() throws IOException {
+		if (!snapshotFile.exists()) {
+			return null;
+		}
+		final Game game = GameSnapshot.fromBytes(readFile(snapshotFile));
+		final long hash = game.getBoard().getHash();
+
+		// the other journals are either older or continue snapshots which were not written
+		int journal = -1;
+		for (int i = 0; i < buffers.length; i++) {
+			final MappedByteBuffer buffer = map(i);
+			if (buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION) {
+				final long generation = buffer.getLong(GENERATION_POSITION);
+				if (buffer.getLong(BASE_HASH_POSITION) == hash && (journal < 0 || generation > buffers[journal].getLong(GENERATION_POSITION))) {
+					journal = i;
+				}
+				this.generation = max(this.generation, generation);
+			}
+		}
+		if (journal < 0) {
+			// the snapshot is on disk already, only its journal is started
+			start(0, game);
+			saved = 0;
+			savedGeneration = generation;
+			return game;
+		}
+
+		current = journal;
+		saved = journal;
+		savedGeneration = buffers[journal].getLong(GENERATION_POSITION);
+		end = HEADER_SIZE;
+		final MappedByteBuffer buffer = buffers[journal];
+		final Moves moves = Moves.newMoves();
+		while (replay(game, buffer, moves)) {
+		}
+		// drops the turns which can't be replayed
+		clear(buffer, end);
+		return game;
+	}
+
+	/**
+	 * Replays the turn at {@link #end} and moves {@link #end} after it
+	 *
+	 * @return true if the turn was replayed
+	 */
+	private boolean replay(@Nonnull Game game, @Nonnull MappedByteBuffer buffer, @Nonnull Moves moves) {
+		if (end + 2 > CAPACITY) {
+			return false;
+		}
+		final int direction = buffer.get(end) - 1;
+		final int count = buffer.get(end + 1) & 0xFF;
+		if (direction < 0 || direction >= directions.length || end + getTurnSize(count) > CAPACITY) {
+			return false;
+		}
+
+		final Board board = game.getBoard();
+		final Game next = game.copy();
+		final Board nextBoard = next.getBoard();
+		next.go(directions[direction], moves);
+		if (moves.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < count; i++) {
+			final int index = buffer.getChar(end + 2 + 2 * i);
+			if (index >= nextBoard.cells.length || nextBoard.cells[index] != Cell.NO_VALUE) {
+				return false;
+			}
+			nextBoard.spawn(index);
+		}
+		if (buffer.getInt(end + 2 + 2 * count) != (int) nextBoard.getHash()) {
+			return false;
+		}
+
+		board.copyFrom(nextBoard);
+		game.getScore().onMoveChanged(moves);
+		end += getTurnSize(count);
+		return true;
+	}
+
+	/**
+	 * Saves the turn which was just played in <var>game</var>: the cells moved in <var>direction</var> and
+	 * <var>newCells</var> appeared. Previous turns of the game must be saved either by this method or by
+	 * {@link #checkpoint(Game)}.
+	 */
+	public void append(@Nonnull Game game, @Nonnull Direction direction, @Nonnull List<CellChange.New> newCells) throws IOException {
+		final MappedByteBuffer buffer = buffers[current];
+		final int count = newCells.size();
+		if (buffer == null || end + getTurnSize(count) > CAPACITY) {
+			checkpoint(game);
+			return;
+		}
+
+		final Board board = game.getBoard();
+		final int size = board.getSize();
+		buffer.put(end + 1, (byte) count);
+		for (int i = 0; i < count; i++) {
+			final Position position = newCells.get(i).position;
+			buffer.putChar(end + 2 + 2 * i, (char) (position.row * size + position.col));
+		}
+		buffer.putInt(end + 2 + 2 * count, (int) board.getHash());
+		// completes the turn
+		buffer.put(end, (byte) (direction.ordinal() + 1));
+		end += getTurnSize(count);
+	}
+
+	/**
+	 * Saves a snapshot of <var>game</var> in background and appends the following turns to a new journal. Until the
+	 * snapshot is written the previous snapshot and its journal are restored. Must be called when a new game starts.
+	 */
+	public void checkpoint(@Nonnull Game game) throws IOException {
+		// snapshot on disk can later be replaced only by the one being written or by the latest one: their journals are
+		// kept. writing is read first: if its snapshot is saved in between, saved is read after the change
+		final int writingJournal = writing;
+		final int savedJournal = saved;
+		int journal = 0;
+		while (journal == savedJournal || journal == writingJournal || journal == current) {
+			journal++;
+		}
+		start(journal, game);
+
+		final int checkpointJournal = journal;
+		final long checkpointGeneration = generation;
+		final Game snapshot = game.copy();
+		writer.save(snapshotFile, new WriteBehind.Snapshot() {
+			@Nonnull
+			@Override
+			public byte[] toBytes() {
+				writing = checkpointJournal;
+				return GameSnapshot.toBytes(snapshot);
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				if (checkpointGeneration > savedGeneration) {
+					savedGeneration = checkpointGeneration;
+					saved = checkpointJournal;
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return true if the snapshot of the last {@link #checkpoint(Game)} is written
+	 */
+	public boolean isCheckpointSaved() {
+		return saved == current;
+	}
+
+	/**
+	 * Clears <var>journal</var> and makes it the current one continuing the snapshot of <var>game</var>
+	 */
+	private void start(int journal, @Nonnull Game game) throws IOException {
+		final MappedByteBuffer buffer = map(journal);
+		clear(buffer, 0);
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, VERSION);
+		buffer.putLong(BASE_HASH_POSITION, game.getBoard().getHash());
+		buffer.putLong(GENERATION_POSITION, ++generation);
+		current = journal;
+		end = HEADER_SIZE;
+	}
+
+	/**
+	 * Zeroes the journal from <var>from</var> to the end, including incomplete turns. Only non-zero bytes are written
+	 * so that untouched pages stay clean.
+	 */
+	private static void clear(@Nonnull MappedByteBuffer buffer, int from) {
+		for (int i = from; i < CAPACITY; i++) {
+			if (buffer.get(i) != 0) {
+				buffer.put(i, (byte) 0);
+			}
+		}
+	}
+
+	@Nonnull
+	private MappedByteBuffer map(int journal) throws IOException {
+		MappedByteBuffer buffer = buffers[journal];
+		if (buffer == null) {
+			final RandomAccessFile file = new RandomAccessFile(journalFiles[journal], "rw");
+			try {
+				// mapping stays valid after the file is closed
+				buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, CAPACITY);
+			} finally {
+				file.close();
+			}
+			buffers[journal] = buffer;
+		}
+		return buffer;
+	}
+
+	private static int getTurnSize(int newCells) {
+		return 1 + 1 + 2 * newCells + 4;
+	}
+
+	@Nonnull
+	private static byte[] readFile(@Nonnull File file) throws IOException {
+		final RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			final byte[] bytes = new byte[(int) in.length()];
+			in.readFully(bytes);
+			return bytes;
+		} finally {
+			in.close();
+		}
+	}
+}
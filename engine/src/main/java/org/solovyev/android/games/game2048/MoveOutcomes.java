@@ -0,0 +1,139 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Results of the moves in all the directions computed in background, e.g. right after {@link Game#prepareNextTurn()}
+ * while the user thinks about the move. Then the move itself doesn't scan the board: illegal moves are known
+ * beforehand and a legal move only takes the ready board, see {@link #commit(Game, Direction)}. Outcomes are keyed by
+ * the hash of the board they were computed for, so outcomes of other positions are never used.
+ * <p/>
+ * Calls must be serialized, e.g. by the lock of the game, only the computation runs on another thread.
+ */
+public final class MoveOutcomes {
+
+	@Nonnull
+	private static final Direction[] directions = Direction.values();
+
+	@Nonnull
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(@Nonnull Runnable r) {
+			final Thread thread = new Thread(r, "outcomes");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	// latest computed outcomes, set by the executor's thread. Null until they are computed or after one of them is
+	// committed
+	@Nullable
+	private volatile Outcomes outcomes;
+
+	// computation started by compute(Game)
+	@Nullable
+	private Future<?> computation;
+
+	private MoveOutcomes() {
+	}
+
+	@Nonnull
+	public static MoveOutcomes newMoveOutcomes() {
+		return new MoveOutcomes();
+	}
+
+	/**
+	 * Cancels the previous computation, copies the board of <var>game</var> on the calling thread (the caller must
+	 * guarantee that the game is not modified during this call) and computes the moves in all the directions in
+	 * background. The game itself is not changed.
+	 *
+	 * @return computation, done when the outcomes are published
+	 */
+	@Nonnull
+	public Future<?> compute(@Nonnull Game game) {
+		if (computation != null) {
+			computation.cancel(false);
+		}
+		final Board board = game.getBoard().copy();
+		final Difficulty difficulty = game.getDifficulty();
+		computation = executor.submit(new Runnable() {
+			@Override
+			public void run() {
+				outcomes = Outcomes.of(board, difficulty);
+			}
+		});
+		return computation;
+	}
+
+	/**
+	 * @return true if the outcomes were computed for the current position of <var>game</var>
+	 */
+	public boolean isComputedFor(@Nonnull Game game) {
+		final Outcomes outcomes = this.outcomes;
+		return outcomes != null && outcomes.hash == game.getBoard().getHash();
+	}
+
+	/**
+	 * Makes the move in <var>direction</var> in <var>game</var> if the outcomes are computed for it: same as
+	 * {@link Game#go(Direction, Moves)} but the board takes the cells of the precomputed one in constant time. Illegal
+	 * moves don't change the game.
+	 *
+	 * @return moves of the cells, empty if the move is illegal, or null if the outcomes are not computed for
+	 * <var>game</var> and the move must be made by {@link Game#go(Direction, Moves)}
+	 */
+	@Nullable
+	public Moves commit(@Nonnull Game game, @Nonnull Direction direction) {
+		final Outcomes outcomes = this.outcomes;
+		final Board board = game.getBoard();
+		if (outcomes == null || outcomes.hash != board.getHash()) {
+			return null;
+		}
+		final int i = direction.ordinal();
+		final Moves moves = outcomes.moves[i];
+		if (!moves.isEmpty()) {
+			// the outcomes are used up: their board gets the previous cells of the game
+			this.outcomes = null;
+			board.swap(outcomes.boards[i]);
+			game.getScore().onMoveChanged(moves);
+		}
+		return moves;
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private static final class Outcomes {
+
+		// hash of the board the outcomes were computed for
+		private final long hash;
+
+		// positions and moves after the move in each direction
+		@Nonnull
+		private final Board[] boards = new Board[directions.length];
+
+		@Nonnull
+		private final Moves[] moves = new Moves[directions.length];
+
+		private Outcomes(long hash) {
+			this.hash = hash;
+		}
+
+		@Nonnull
+		static Outcomes of(@Nonnull Board board, @Nonnull Difficulty difficulty) {
+			final Outcomes outcomes = new Outcomes(board.getHash());
+			for (int i = 0; i < directions.length; i++) {
+				final Board copy = i == directions.length - 1 ? board : board.copy();
+				outcomes.boards[i] = copy;
+				outcomes.moves[i] = Moves.newMoves();
+				Game.newGame(copy, difficulty).go(directions[i], outcomes.moves[i]);
+			}
+			return outcomes;
+		}
+	}
+}
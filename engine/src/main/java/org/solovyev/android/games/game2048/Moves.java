@@ -0,0 +1,93 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Reusable buffer of the cell moves done in one turn. Cells are referenced by their indices on the board
+ * (row * size + col), moves are stored in the order they were done: line by line, the moves of the cells closer to the
+ * side to which the cells move come first in a line.
+ */
+public final class Moves {
+
+	@Nonnull
+	private int[] from = new int[0];
+
+	@Nonnull
+	private int[] to = new int[0];
+
+	// exponent of the moved cell after the move
+	@Nonnull
+	private byte[] exponents = new byte[0];
+
+	@Nonnull
+	private boolean[] merges = new boolean[0];
+
+	private int size;
+
+	private long points;
+
+	private Moves() {
+	}
+
+	@Nonnull
+	public static Moves newMoves() {
+		return new Moves();
+	}
+
+	void clear(int capacity) {
+		if (from.length < capacity) {
+			from = new int[capacity];
+			to = new int[capacity];
+			exponents = new byte[capacity];
+			merges = new boolean[capacity];
+		}
+		size = 0;
+		points = 0;
+	}
+
+	void add(int from, int to, byte exponent, boolean merge) {
+		this.from[size] = from;
+		this.to[size] = to;
+		this.exponents[size] = exponent;
+		this.merges[size] = merge;
+		if (merge) {
+			points += Cell.toValue(exponent);
+		}
+		size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int getFrom(int i) {
+		return from[i];
+	}
+
+	public int getTo(int i) {
+		return to[i];
+	}
+
+	public int getExponent(int i) {
+		return exponents[i];
+	}
+
+	public boolean isMerge(int i) {
+		return merges[i];
+	}
+
+	public long getPoints(int i) {
+		return merges[i] ? Cell.toValue(exponents[i]) : 0;
+	}
+
+	/**
+	 * @return points earned by all the merges in this turn
+	 */
+	public long getPoints() {
+		return points;
+	}
+}
@@ -0,0 +1,206 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * N-tuple network: value of a board is the sum of weights looked up by the cells of tuples, i.e. of 4 cells in a line
+ * (along rows and columns) and of 4 cells in a 2x2 square. All placements of a shape share one table and every
+ * placement is read in all the orders produced by {@link Symmetry}, so symmetric boards have equal values and the
+ * same network works for any board size. Trained by temporal difference learning (see the simulator module).
+ * <p/>
+ * Weight file: 32 bytes of header (magic, version, tuple length, number of shapes, table size) followed by the tables
+ * as big-endian floats, it can be memory-mapped with {@link #map(File)}.
+ */
+public final class NTupleNetwork implements Evaluator {
+
+	private static final int MAGIC = 0x32303438;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+
+	static final int TUPLE_LENGTH = 4;
+
+	// 4 bits per cell: 0 is empty, 1..14 are exponents (bigger ones are stored as 14), 15 is a wall
+	private static final int CELL_BITS = 4;
+	private static final int MAX_CODE = (1 << CELL_BITS) - 2;
+	private static final int WALL_CODE = MAX_CODE + 1;
+	static final int TABLE_SIZE = 1 << (CELL_BITS * TUPLE_LENGTH);
+
+	private static final int LINE = 0;
+	private static final int SQUARE = 1;
+	private static final int SHAPES = 2;
+
+	@Nonnull
+	private static final Placements[] cache = new Placements[16];
+
+	@Nonnull
+	private final FloatBuffer weights;
+
+	private NTupleNetwork(@Nonnull FloatBuffer weights) {
+		this.weights = weights;
+	}
+
+	@Nonnull
+	public static NTupleNetwork newNTupleNetwork() {
+		return new NTupleNetwork(FloatBuffer.allocate(SHAPES * TABLE_SIZE));
+	}
+
+	/**
+	 * @return read-only network backed by the memory-mapped weight <var>file</var>
+	 */
+	@Nonnull
+	public static NTupleNetwork map(@Nonnull File file) throws IOException {
+		final RandomAccessFile f = new RandomAccessFile(file, "r");
+		try {
+			final ByteBuffer buffer = f.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, f.length());
+			checkHeader(buffer);
+			buffer.position(HEADER_SIZE);
+			return new NTupleNetwork(buffer.slice().asFloatBuffer());
+		} finally {
+			// mapping stays valid after the file is closed
+			f.close();
+		}
+	}
+
+	private static void checkHeader(@Nonnull ByteBuffer buffer) throws IOException {
+		if (buffer.limit() != HEADER_SIZE + 4 * SHAPES * TABLE_SIZE
+				|| buffer.getInt(0) != MAGIC
+				|| buffer.getInt(4) != VERSION
+				|| buffer.getInt(8) != TUPLE_LENGTH
+				|| buffer.getInt(12) != SHAPES
+				|| buffer.getInt(16) != TABLE_SIZE) {
+			throw new IOException("Not a weight file of version " + VERSION);
+		}
+	}
+
+	public void write(@Nonnull File file) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 4 * SHAPES * TABLE_SIZE);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(TUPLE_LENGTH).putInt(SHAPES).putInt(TABLE_SIZE);
+		buffer.position(HEADER_SIZE);
+		for (int i = 0; i < SHAPES * TABLE_SIZE; i++) {
+			buffer.putFloat(weights.get(i));
+		}
+		buffer.flip();
+
+		final RandomAccessFile f = new RandomAccessFile(file, "rw");
+		try {
+			f.setLength(0);
+			final FileChannel channel = f.getChannel();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} finally {
+			f.close();
+		}
+	}
+
+	@Override
+	public double evaluate(@Nonnull Board board) {
+		return max(getValue(board), Double.MIN_VALUE);
+	}
+
+	/**
+	 * @return raw value of <var>board</var>, may be negative
+	 */
+	public double getValue(@Nonnull Board board) {
+		final int[][] placements = getPlacements(board.size).placements;
+		final byte[] cells = board.cells;
+		double value = 0;
+		for (int[] placement : placements) {
+			value += weights.get(getIndex(cells, placement));
+		}
+		return value;
+	}
+
+	/**
+	 * Adds <var>delta</var> to the value of <var>board</var>: each weight used for the board gets its share. Threads may
+	 * update the network concurrently without locking (updates may be lost occasionally, which doesn't matter for
+	 * learning).
+	 */
+	public void update(@Nonnull Board board, double delta) {
+		final int[][] placements = getPlacements(board.size).placements;
+		final byte[] cells = board.cells;
+		final float share = (float) (delta / placements.length);
+		for (int[] placement : placements) {
+			final int index = getIndex(cells, placement);
+			weights.put(index, weights.get(index) + share);
+		}
+	}
+
+	private static int getIndex(@Nonnull byte[] cells, @Nonnull int[] placement) {
+		// first element is the shape
+		int index = 0;
+		for (int i = 1; i < placement.length; i++) {
+			final byte cell = cells[placement[i]];
+			final int code = cell == Cell.WALL ? WALL_CODE : min(cell, MAX_CODE);
+			index = (index << CELL_BITS) | code;
+		}
+		return placement[0] * TABLE_SIZE + index;
+	}
+
+	@Nonnull
+	private static Placements getPlacements(int size) {
+		// Placements has only final fields and can be read without synchronization
+		final Placements placements = size < cache.length ? cache[size] : null;
+		return placements != null ? placements : newPlacements(size);
+	}
+
+	@Nonnull
+	private static synchronized Placements newPlacements(int size) {
+		if (size < cache.length) {
+			if (cache[size] == null) {
+				cache[size] = new Placements(size);
+			}
+			return cache[size];
+		}
+		return new Placements(size);
+	}
+
+	/**
+	 * Shape and cells of each tuple on a board of some size
+	 */
+	private static final class Placements {
+
+		// {shape, cell 1, ..., cell TUPLE_LENGTH}
+		@Nonnull
+		private final int[][] placements;
+
+		private Placements(int size) {
+			final List<int[]> placements = new ArrayList<int[]>();
+			for (int row = 0; row < size; row++) {
+				for (int col = 0; col < size; col++) {
+					// cells relative to (row, col) in the reading order
+					if (col + TUPLE_LENGTH <= size) {
+						add(placements, size, LINE, row, col, new int[]{0, 0, 0, 1, 0, 2, 0, 3});
+					}
+					if (row + 1 < size && col + 1 < size) {
+						add(placements, size, SQUARE, row, col, new int[]{0, 0, 0, 1, 1, 1, 1, 0});
+					}
+				}
+			}
+			this.placements = placements.toArray(new int[placements.size()][]);
+		}
+
+		private static void add(@Nonnull List<int[]> placements, int size, int shape, int row, int col, @Nonnull int[] offsets) {
+			for (Symmetry symmetry : Symmetry.values()) {
+				final int[] placement = new int[1 + TUPLE_LENGTH];
+				placement[0] = shape;
+				for (int i = 0; i < TUPLE_LENGTH; i++) {
+					final int index = (row + offsets[2 * i]) * size + col + offsets[2 * i + 1];
+					placement[1 + i] = symmetry.apply(index, size);
+				}
+				placements.add(placement);
+			}
+		}
+	}
+}
@@ -0,0 +1,383 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Same search as {@link Expectimax} but subtrees of the moves and of the new cells' positions are searched in parallel
+ * in a {@link ForkJoinPool}. Subtrees not deeper than {@link #setSequentialDepth(int)} are searched sequentially by
+ * per-thread {@link Expectimax}es sharing one {@link ConcurrentTranspositionTable}.
+ * <p/>
+ * Requires {@link ForkJoinPool} which is available on Android since API 21. One search at a time, see
+ * {@link #findBestMove(Game, long)}.
+ */
+public final class ParallelExpectimax {
+
+	@Nonnull
+	private static final Direction[] directions = Direction.values();
+
+	@Nonnull
+	private final ForkJoinPool pool;
+
+	@Nonnull
+	private final Evaluator evaluator;
+
+	@Nonnull
+	private final ConcurrentTranspositionTable table = ConcurrentTranspositionTable.newConcurrentTranspositionTable(1 << 18);
+
+	@Nonnull
+	private final ThreadLocal<Searcher> searchers = new ThreadLocal<Searcher>() {
+		@Override
+		protected Searcher initialValue() {
+			return new Searcher(Expectimax.newExpectimax(evaluator, table));
+		}
+	};
+
+	private volatile int sequentialDepth = 3;
+
+	private volatile int maxChanceOutcomes = Expectimax.DEFAULT_MAX_CHANCE_OUTCOMES;
+
+	private ParallelExpectimax(@Nonnull Evaluator evaluator, int parallelism) {
+		this.evaluator = evaluator;
+		this.pool = new ForkJoinPool(parallelism);
+	}
+
+	@Nonnull
+	public static ParallelExpectimax newParallelExpectimax(@Nonnull Evaluator evaluator) {
+		return newParallelExpectimax(evaluator, Runtime.getRuntime().availableProcessors());
+	}
+
+	@Nonnull
+	public static ParallelExpectimax newParallelExpectimax(@Nonnull Evaluator evaluator, int parallelism) {
+		return new ParallelExpectimax(evaluator, parallelism);
+	}
+
+	/**
+	 * @param sequentialDepth subtrees of this depth or less are not split between threads as the overhead of tasks
+	 *                        would dominate
+	 */
+	public void setSequentialDepth(int sequentialDepth) {
+		this.sequentialDepth = sequentialDepth;
+	}
+
+	/**
+	 * @see Expectimax#setMaxChanceOutcomes(int)
+	 */
+	public void setMaxChanceOutcomes(int maxChanceOutcomes) {
+		this.maxChanceOutcomes = maxChanceOutcomes;
+	}
+
+	/**
+	 * Concurrent calls are serialized: a search starts when all the tasks of the previous one are completed.
+	 *
+	 * @see Expectimax#findBestMove(Game, long)
+	 */
+	@Nullable
+	public synchronized Direction findBestMove(@Nonnull Game game, long budgetNanos) {
+		final Board board = game.getBoard().copy();
+		final Difficulty difficulty = game.getDifficulty();
+
+		Direction best = null;
+		long deadline = Long.MAX_VALUE;
+		for (int depth = 1; depth <= Expectimax.MAX_DEPTH; depth++) {
+			final Search search = new Search(difficulty, deadline, sequentialDepth, maxChanceOutcomes);
+			try {
+				best = pool.invoke(new RootTask(search, board, depth));
+			} catch (Expectimax.TimeoutException e) {
+				break;
+			}
+			if (best == null) {
+				break;
+			}
+			if (depth == 1) {
+				deadline = System.nanoTime() + budgetNanos;
+			}
+			if (System.nanoTime() >= deadline || Thread.currentThread().isInterrupted()) {
+				break;
+			}
+		}
+		return best;
+	}
+
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+
+	@Nonnull
+	private Searcher getSearcher(@Nonnull Search search, int size) {
+		final Searcher searcher = searchers.get();
+		searcher.prepare(search, size);
+		return searcher;
+	}
+
+	/**
+	 * Same as {@link ForkJoinTask#invokeAll(java.util.Collection)} but if a task fails waits for the others to complete
+	 * (or to be cancelled): a timed out search must not leave running tasks behind
+	 */
+	private static <T extends ForkJoinTask<?>> void invokeAll(@Nonnull List<T> tasks) {
+		try {
+			ForkJoinTask.invokeAll(tasks);
+		} catch (RuntimeException e) {
+			for (T task : tasks) {
+				task.quietlyJoin();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Parameters of one iteration of the search. Immutable and passed to every task so that tasks of different searches
+	 * don't share any state except the transposition table.
+	 */
+	private static final class Search {
+
+		@Nonnull
+		private final Difficulty difficulty;
+
+		private final long deadline;
+
+		private final int sequentialDepth;
+
+		private final int maxChanceOutcomes;
+
+		private Search(@Nonnull Difficulty difficulty, long deadline, int sequentialDepth, int maxChanceOutcomes) {
+			this.difficulty = difficulty;
+			this.deadline = deadline;
+			this.sequentialDepth = sequentialDepth;
+			this.maxChanceOutcomes = maxChanceOutcomes;
+		}
+
+		private void checkTime() {
+			if (System.nanoTime() >= deadline) {
+				throw Expectimax.TimeoutException.instance;
+			}
+		}
+	}
+
+	/**
+	 * Sequential search and scratch objects of a worker thread. Scratch objects are used only until the task forks:
+	 * while the task waits for its subtasks the thread may run other tasks.
+	 */
+	private static final class Searcher {
+
+		@Nonnull
+		private final Expectimax expectimax;
+
+		@Nonnull
+		private final RandomSource random = RandomSources.newRandomSource();
+
+		@Nonnull
+		private final CanonicalPosition canonical = CanonicalPosition.newCanonicalPosition();
+
+		@Nonnull
+		private final Moves moves = Moves.newMoves();
+
+		// scratch objects for boards of size, see prepare
+		private int size;
+		private Game afterMove;
+		private Board afterSpawn;
+		private int[] empty;
+
+		private Searcher(@Nonnull Expectimax expectimax) {
+			this.expectimax = expectimax;
+		}
+
+		private void prepare(@Nonnull Search search, int size) {
+			expectimax.prepare(size, search.difficulty);
+			expectimax.setMaxChanceOutcomes(search.maxChanceOutcomes);
+			expectimax.setDeadline(search.deadline);
+			if (this.size != size) {
+				this.size = size;
+				afterMove = Game.newGame(size, false, search.difficulty);
+				afterSpawn = Board.newBoard(size, false);
+				empty = new int[size * size];
+			}
+		}
+
+		/**
+		 * @return positions after moving <var>board</var> in every possible direction, null for impossible moves
+		 */
+		@Nonnull
+		private Board[] moveAll(@Nonnull Board board) {
+			final Board[] result = new Board[directions.length];
+			for (int i = 0; i < directions.length; i++) {
+				afterMove.getBoard().copyFrom(board);
+				afterMove.go(directions[i], moves);
+				if (!moves.isEmpty()) {
+					result[i] = afterMove.getBoard().copy();
+				}
+			}
+			return result;
+		}
+	}
+
+	private final class RootTask extends RecursiveTask<Direction> {
+
+		private static final long serialVersionUID = 1L;
+
+		@Nonnull
+		private final Search search;
+
+		@Nonnull
+		private final Board board;
+
+		private final int depth;
+
+		private RootTask(@Nonnull Search search, @Nonnull Board board, int depth) {
+			this.search = search;
+			this.board = board;
+			this.depth = depth;
+		}
+
+		@Override
+		protected Direction compute() {
+			final Board[] afterMoves = getSearcher(search, board.size).moveAll(board);
+			final List<ChanceTask> tasks = new ArrayList<ChanceTask>(directions.length);
+			for (Board afterMove : afterMoves) {
+				if (afterMove != null) {
+					tasks.add(new ChanceTask(search, afterMove, depth));
+				}
+			}
+			invokeAll(tasks);
+
+			Direction best = null;
+			double bestValue = -1;
+			int task = 0;
+			for (int i = 0; i < directions.length; i++) {
+				if (afterMoves[i] != null) {
+					final double value = tasks.get(task++).join();
+					if (value > bestValue) {
+						bestValue = value;
+						best = directions[i];
+					}
+				}
+			}
+			return best;
+		}
+	}
+
+	/**
+	 * Max node of one of the outcomes of {@link #parent}. Its board is built when the task runs: on the scratch board
+	 * if the subtree is searched sequentially, on a new board otherwise.
+	 */
+	private final class MaxTask extends RecursiveTask<Double> {
+
+		private static final long serialVersionUID = 1L;
+
+		@Nonnull
+		private final ChanceTask parent;
+
+		private final int outcome;
+
+		private MaxTask(@Nonnull ChanceTask parent, int outcome) {
+			this.parent = parent;
+			this.outcome = outcome;
+		}
+
+		@Override
+		protected Double compute() {
+			final Search search = parent.search;
+			final int depth = parent.depth - 1;
+			final Searcher searcher = getSearcher(search, parent.board.size);
+			final boolean sequential = depth <= search.sequentialDepth;
+			final Board board;
+			if (sequential) {
+				board = searcher.afterSpawn;
+				board.copyFrom(parent.board);
+			} else {
+				board = parent.board.copy();
+			}
+			// spawning may shuffle the empty cells which are shared by all the outcomes
+			final int emptyCount = parent.empty.length;
+			System.arraycopy(parent.empty, 0, searcher.empty, 0, emptyCount);
+			Expectimax.spawn(board, outcome, parent.outcomes, searcher.empty, emptyCount, parent.newCells, searcher.random);
+			if (sequential) {
+				return searcher.expectimax.maxNode(board, depth);
+			}
+			search.checkTime();
+
+			final List<ChanceTask> tasks = new ArrayList<ChanceTask>(directions.length);
+			for (Board afterMove : searcher.moveAll(board)) {
+				if (afterMove != null) {
+					tasks.add(new ChanceTask(search, afterMove, depth));
+				}
+			}
+			invokeAll(tasks);
+
+			// no moves => lost game => 0
+			double best = 0;
+			for (ChanceTask task : tasks) {
+				best = Math.max(best, task.join());
+			}
+			return best;
+		}
+	}
+
+	private final class ChanceTask extends RecursiveTask<Double> {
+
+		private static final long serialVersionUID = 1L;
+
+		@Nonnull
+		private final Search search;
+
+		@Nonnull
+		private final Board board;
+
+		private final int depth;
+
+		// set before the outcomes are forked, see MaxTask
+		@Nonnull
+		private int[] empty = new int[0];
+		private int newCells;
+		private int outcomes;
+
+		private ChanceTask(@Nonnull Search search, @Nonnull Board board, int depth) {
+			this.search = search;
+			this.board = board;
+			this.depth = depth;
+		}
+
+		@Override
+		protected Double compute() {
+			if (depth <= 1) {
+				return evaluator.evaluate(board);
+			}
+			search.checkTime();
+
+			final Searcher searcher = getSearcher(search, board.size);
+			final long key = Expectimax.getKey(searcher.canonical, board, search.difficulty);
+			final double cached = table.get(key, depth);
+			if (!Double.isNaN(cached)) {
+				return cached;
+			}
+
+			final int emptyCount = board.getEmptyCount();
+			empty = new int[emptyCount];
+			for (int i = 0; i < emptyCount; i++) {
+				empty[i] = board.getEmptyCell(i);
+			}
+			newCells = Expectimax.getNewCells(board, search.difficulty);
+			outcomes = Expectimax.getOutcomes(emptyCount, newCells, search.maxChanceOutcomes);
+
+			final List<MaxTask> tasks = new ArrayList<MaxTask>(outcomes);
+			for (int i = 0; i < outcomes; i++) {
+				tasks.add(new MaxTask(this, i));
+			}
+			invokeAll(tasks);
+
+			double sum = 0;
+			for (MaxTask task : tasks) {
+				sum += task.join();
+			}
+
+			final double value = sum / outcomes;
+			table.put(key, depth, value);
+			return value;
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package org.solovyev.android.games.game2048;
+
+public final class Position {
+
+	public final int row;
+	public final int col;
+
+	public Position(int row, int col) {
+		this.row = row;
+		this.col = col;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+
+		final Position that = (Position) o;
+		return row == that.row && col == that.col;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * row + col;
+	}
+
+	@Override
+	public String toString() {
+		return "(" + row + ", " + col + ")";
+	}
+}
@@ -0,0 +1,29 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Source of random numbers for spawning new cells. Implementations are not thread-safe: each thread (and normally
+ * each {@link Board}) has its own source, see {@link #split()}.
+ */
+public interface RandomSource {
+
+	/**
+	 * @return uniformly distributed value in [0, bound), bound must be positive
+	 */
+	int nextInt(int bound);
+
+	long nextLong();
+
+	/**
+	 * @return new source producing the same numbers as this one from its current state
+	 */
+	@Nonnull
+	RandomSource copy();
+
+	/**
+	 * @return new source statistically independent from this one, advances this source
+	 */
+	@Nonnull
+	RandomSource split();
+}
@@ -0,0 +1,41 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class RandomSources {
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	// seeds for sources created without an explicit seed, see java.util.SplittableRandom
+	@Nonnull
+	private static final AtomicLong seeder = new AtomicLong(mix(System.currentTimeMillis()) ^ mix(System.nanoTime()));
+
+	private RandomSources() {
+		throw new AssertionError();
+	}
+
+	@Nonnull
+	public static RandomSource newRandomSource() {
+		return newRandomSource(seeder.getAndAdd(2 * GOLDEN_GAMMA));
+	}
+
+	@Nonnull
+	public static RandomSource newRandomSource(long seed) {
+		return Xoshiro256.newXoshiro256(seed);
+	}
+
+	/**
+	 * SplitMix64 generator: <var>state</var> is advanced by {@link #GOLDEN_GAMMA}
+	 */
+	static long nextSplitMix64(@Nonnull long[] state) {
+		state[0] += GOLDEN_GAMMA;
+		return mix(state[0]);
+	}
+
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
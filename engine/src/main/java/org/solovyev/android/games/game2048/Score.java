@@ -5,13 +5,12 @@ import org.json.JSONObject;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.List;
 
 public class Score {
 
-	private static final String JSON_POINTS = "points";
+	static final String JSON_POINTS = "points";
 
-	private int points;
+	private long points;
 
 	private Score() {
 	}
@@ -21,6 +20,20 @@ public class Score {
 		return new Score();
 	}
 
+	@Nonnull
+	static Score newScore(long points) {
+		final Score score = new Score();
+		score.points = points;
+		return score;
+	}
+
+	@Nonnull
+	public Score copy() {
+		final Score copy = new Score();
+		copy.points = points;
+		return copy;
+	}
+
 	@Nonnull
 	public JSONObject toJson() throws JSONException {
 		final JSONObject result = new JSONObject();
@@ -32,24 +45,20 @@ public class Score {
 	public static Score fromJson(@Nullable JSONObject json) throws JSONException {
 		final Score score = newScore();
 		if (json != null) {
-			score.points = json.getInt(JSON_POINTS);
+			score.points = json.getLong(JSON_POINTS);
 		}
 		return score;
 	}
 
-	public void onMoveChanged(@Nonnull List<CellChange.Move> changes) {
-		for (CellChange.Move change : changes) {
-			if(change instanceof CellChange.Move.Merge) {
-				points += change.cell.getValue();
-			}
-		}
+	public void onMoveChanged(@Nonnull Moves moves) {
+		points += moves.getPoints();
 	}
 
 	public boolean hasPoints() {
 		return points > 0;
 	}
 
-	public int getPoints() {
+	public long getPoints() {
 		return points;
 	}
 }
@@ -0,0 +1,70 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Parts of the board's lines between walls: cells move and merge only within their segment. Walls never move once
+ * placed, so the segments are computed once per board (see {@link Board#getSegments()}) instead of looking for walls
+ * on every move. Segments of one cell are omitted as nothing can move in them.
+ * <p/>
+ * Immutable, shared by the copies of a board.
+ */
+final class Segments {
+
+	// for each direction (indexed by ordinal): cells to which the segments' cells move, in the order of the lines
+	@Nonnull
+	final int[][] firsts = new int[Direction.values().length][];
+
+	// for each direction: number of cells in each segment
+	@Nonnull
+	final int[][] lengths = new int[Direction.values().length][];
+
+	// for each direction: index difference of the adjacent cells of a segment, from the first one
+	@Nonnull
+	final int[] steps = new int[Direction.values().length];
+
+	private Segments() {
+	}
+
+	@Nonnull
+	static Segments newSegments(@Nonnull byte[] cells, int size) {
+		final Segments segments = new Segments();
+		segments.add(cells, size, Direction.left, 0, 1, size);
+		segments.add(cells, size, Direction.up, 0, size, 1);
+		segments.add(cells, size, Direction.right, size - 1, -1, size);
+		segments.add(cells, size, Direction.down, (size - 1) * size, -size, 1);
+		return segments;
+	}
+
+	/**
+	 * Line <var>l</var> consists of the cells <code>first + l * lineStep + k * step</code> for k in [0, size)
+	 */
+	private void add(@Nonnull byte[] cells, int size, @Nonnull Direction direction, int first, int step, int lineStep) {
+		final int[] firsts = new int[cells.length];
+		final int[] lengths = new int[cells.length];
+		int count = 0;
+		for (int line = 0; line < size; line++) {
+			final int lineFirst = first + line * lineStep;
+			int length = 0;
+			for (int k = 0, i = lineFirst; k <= size; k++, i += step) {
+				if (k == size || cells[i] == Cell.WALL) {
+					if (length > 1) {
+						firsts[count] = i - length * step;
+						lengths[count] = length;
+						count++;
+					}
+					length = 0;
+				} else {
+					length++;
+				}
+			}
+		}
+
+		final int d = direction.ordinal();
+		this.firsts[d] = new int[count];
+		this.lengths[d] = new int[count];
+		System.arraycopy(firsts, 0, this.firsts[d], 0, count);
+		System.arraycopy(lengths, 0, this.lengths[d], 0, count);
+		this.steps[d] = step;
+	}
+}
@@ -0,0 +1,57 @@
+package org.solovyev.android.games.game2048;
+
+import java.util.Arrays;
+
+/**
+ * Entries are replaced on collision, not thread-safe
+ */
+final class SimpleTranspositionTable implements TranspositionTable {
+
+	private final int shift;
+
+	private final long[] keys;
+	private final double[] values;
+	private final byte[] depths;
+
+	private SimpleTranspositionTable(int capacity) {
+		if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of 2 greater than 1: " + capacity);
+		}
+		this.shift = 64 - Integer.numberOfTrailingZeros(capacity);
+		this.keys = new long[capacity];
+		this.values = new double[capacity];
+		this.depths = new byte[capacity];
+	}
+
+	static SimpleTranspositionTable newSimpleTranspositionTable(int capacity) {
+		return new SimpleTranspositionTable(capacity);
+	}
+
+	@Override
+	public double get(long key, int depth) {
+		final int slot = slot(key);
+		// depth 0 marks an empty slot
+		if (keys[slot] == key && depths[slot] >= depth && depths[slot] > 0) {
+			return values[slot];
+		}
+		return Double.NaN;
+	}
+
+	@Override
+	public void put(long key, int depth, double value) {
+		final int slot = slot(key);
+		keys[slot] = key;
+		values[slot] = value;
+		depths[slot] = (byte) depth;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(depths, (byte) 0);
+	}
+
+	private int slot(long key) {
+		// keys are not necessarily random (e.g. packed boards), Fibonacci hashing spreads them
+		return (int) ((key * 0x9e3779b97f4a7c15L) >>> shift);
+	}
+}
@@ -0,0 +1,91 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Symmetries of a square board (rotations and reflections). Rules of the game don't depend on orientation: moving
+ * board <code>b</code> in direction <code>d</code> and then transforming it gives the same board as moving the
+ * transformed board in direction <code>s.apply(d)</code>.
+ * <p/>
+ * Cell (row, col) of the board is moved to (row', col') of the transformed board: row and col are swapped if
+ * {@link #swap} is set and then row and/or col are mirrored (x -> size - 1 - x).
+ */
+public enum Symmetry {
+	identity(false, false, false),
+	mirror(false, false, true),
+	flip(false, true, false),
+	rotate180(false, true, true),
+	transpose(true, false, false),
+	rotate90(true, false, true),
+	rotate270(true, true, false),
+	antiTranspose(true, true, true);
+
+	private final boolean swap;
+	private final boolean mirrorRow;
+	private final boolean mirrorCol;
+
+	Symmetry(boolean swap, boolean mirrorRow, boolean mirrorCol) {
+		this.swap = swap;
+		this.mirrorRow = mirrorRow;
+		this.mirrorCol = mirrorCol;
+	}
+
+	/**
+	 * @return index of cell <var>index</var> of the board of the given <var>size</var> after the transformation
+	 */
+	public int apply(int index, int size) {
+		final int row = index / size;
+		final int col = index - row * size;
+		int newRow = swap ? col : row;
+		int newCol = swap ? row : col;
+		if (mirrorRow) {
+			newRow = size - 1 - newRow;
+		}
+		if (mirrorCol) {
+			newCol = size - 1 - newCol;
+		}
+		return newRow * size + newCol;
+	}
+
+	/**
+	 * @return direction on the transformed board which corresponds to <var>direction</var> on the original board
+	 */
+	@Nonnull
+	public Direction apply(@Nonnull Direction direction) {
+		final boolean vertical = direction == Direction.up || direction == Direction.down;
+		final boolean positive = direction == Direction.down || direction == Direction.right;
+		final boolean newVertical = swap != vertical;
+		final boolean newPositive = positive != (newVertical ? mirrorRow : mirrorCol);
+		if (newVertical) {
+			return newPositive ? Direction.down : Direction.up;
+		} else {
+			return newPositive ? Direction.right : Direction.left;
+		}
+	}
+
+	@Nonnull
+	public Symmetry inverse() {
+		switch (this) {
+			case rotate90:
+				return rotate270;
+			case rotate270:
+				return rotate90;
+			default:
+				return this;
+		}
+	}
+
+	/**
+	 * Same as {@link #apply(int, int)} for all the cells of the board packed by {@link BitBoard}
+	 */
+	long apply(long packed) {
+		long result = swap ? BitBoard.transpose(packed) : packed;
+		if (mirrorCol) {
+			result = BitBoard.mirror(result);
+		}
+		if (mirrorRow) {
+			result = BitBoard.flip(result);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,16 @@
+package org.solovyev.android.games.game2048;
+
+/**
+ * Fixed-size cache of search results keyed by position
+ */
+interface TranspositionTable {
+
+	/**
+	 * @return value stored for <var>key</var> searched at least to <var>depth</var>, NaN if there is no such value
+	 */
+	double get(long key, int depth);
+
+	void put(long key, int depth, double value);
+
+	void clear();
+}
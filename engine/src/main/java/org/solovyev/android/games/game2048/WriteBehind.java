@@ -0,0 +1,157 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Saves files on a background thread so that neither serialization nor disk I/O happen on the caller's thread.
+ * Saves of the same file requested before the previous one was written are coalesced: only the latest snapshot is
+ * serialized and written. Files are replaced atomically, see {@link #writeFile(File, byte[])}.
+ */
+public final class WriteBehind {
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	@Nonnull
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(@Nonnull Runnable r) {
+			final Thread thread = new Thread(r, "saves");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	@Nonnull
+	private final Listener listener;
+
+	// latest saves not yet written, guarded by this
+	@Nonnull
+	private final Map<File, Save> pending = new HashMap<File, Save>();
+
+	private WriteBehind(@Nonnull Listener listener) {
+		this.listener = listener;
+	}
+
+	@Nonnull
+	public static WriteBehind newWriteBehind(@Nonnull Listener listener) {
+		return new WriteBehind(listener);
+	}
+
+	/**
+	 * Schedules writing of <var>snapshot</var> to <var>file</var>. The snapshot must not change after this call, e.g. it
+	 * should hold a copy of the game rather than the game itself.
+	 */
+	public void save(@Nonnull File file, @Nonnull Snapshot snapshot) {
+		save(file, snapshot, null);
+	}
+
+	/**
+	 * Same as {@link #save(File, Snapshot)} but <var>onSaved</var> is run on the background thread after the snapshot
+	 * is written. It's not run if the write fails or if the snapshot is replaced by a later one before being written.
+	 */
+	public void save(@Nonnull final File file, @Nonnull Snapshot snapshot, @Nullable Runnable onSaved) {
+		synchronized (this) {
+			if (pending.put(file, new Save(snapshot, onSaved)) != null) {
+				// the write is already scheduled and will take the new snapshot
+				return;
+			}
+		}
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				final Save save;
+				synchronized (WriteBehind.this) {
+					save = pending.remove(file);
+				}
+				try {
+					writeFile(file, save.snapshot.toBytes());
+					if (save.onSaved != null) {
+						save.onSaved.run();
+					}
+				} catch (IOException e) {
+					listener.onError(file, e);
+				} catch (RuntimeException e) {
+					listener.onError(file, e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Blocks until all the saves requested before this call are written
+	 */
+	public void flush() throws InterruptedException {
+		try {
+			executor.submit(new Runnable() {
+				@Override
+				public void run() {
+				}
+			}).get();
+		} catch (ExecutionException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Replaces <var>file</var> with <var>bytes</var>: they are written to a temporary file which is synced to the disk
+	 * and then renamed to <var>file</var>, so after a crash the file contains either the old or the new bytes
+	 */
+	public static void writeFile(@Nonnull File file, @Nonnull byte[] bytes) throws IOException {
+		final File temp = new File(file.getPath() + TEMP_SUFFIX);
+		final FileOutputStream out = new FileOutputStream(temp);
+		try {
+			out.write(bytes);
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+		if (!temp.renameTo(file)) {
+			throw new IOException("Can't rename " + temp + " to " + file);
+		}
+	}
+
+	private static final class Save {
+
+		@Nonnull
+		private final Snapshot snapshot;
+
+		@Nullable
+		private final Runnable onSaved;
+
+		private Save(@Nonnull Snapshot snapshot, @Nullable Runnable onSaved) {
+			this.snapshot = snapshot;
+			this.onSaved = onSaved;
+		}
+	}
+
+	/**
+	 * Immutable state to be saved, serialized on the background thread
+	 */
+	public interface Snapshot {
+
+		@Nonnull
+		byte[] toBytes() throws IOException;
+	}
+
+	public interface Listener {
+
+		/**
+		 * Called on the background thread if <var>file</var> can't be saved
+		 */
+		void onError(@Nonnull File file, @Nonnull Exception e);
+	}
+}
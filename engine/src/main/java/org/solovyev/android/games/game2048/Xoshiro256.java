@@ -0,0 +1,76 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+
+import static java.lang.Long.rotateLeft;
+
+/**
+ * xoshiro256** generator by David Blackman and Sebastiano Vigna, see http://prng.di.unimi.it
+ */
+final class Xoshiro256 implements RandomSource {
+
+	private long s0;
+	private long s1;
+	private long s2;
+	private long s3;
+
+	private Xoshiro256(long s0, long s1, long s2, long s3) {
+		this.s0 = s0;
+		this.s1 = s1;
+		this.s2 = s2;
+		this.s3 = s3;
+	}
+
+	@Nonnull
+	static Xoshiro256 newXoshiro256(long seed) {
+		// state is expanded from the seed with SplitMix64 as recommended by the authors, it is never all zeros
+		final long[] state = {seed};
+		return new Xoshiro256(RandomSources.nextSplitMix64(state),
+				RandomSources.nextSplitMix64(state),
+				RandomSources.nextSplitMix64(state),
+				RandomSources.nextSplitMix64(state));
+	}
+
+	@Override
+	public long nextLong() {
+		final long result = rotateLeft(s1 * 5, 7) * 9;
+		final long t = s1 << 17;
+		s2 ^= s0;
+		s3 ^= s1;
+		s1 ^= s2;
+		s0 ^= s3;
+		s2 ^= t;
+		s3 = rotateLeft(s3, 45);
+		return result;
+	}
+
+	@Override
+	public int nextInt(int bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("Bound must be positive: " + bound);
+		}
+		// Lemire's multiply-shift with rejection of the biased values
+		long m = (nextLong() >>> 32) * bound;
+		long low = m & 0xFFFFFFFFL;
+		if (low < bound) {
+			final long threshold = (0x100000000L - bound) % bound;
+			while (low < threshold) {
+				m = (nextLong() >>> 32) * bound;
+				low = m & 0xFFFFFFFFL;
+			}
+		}
+		return (int) (m >>> 32);
+	}
+
+	@Nonnull
+	@Override
+	public RandomSource copy() {
+		return new Xoshiro256(s0, s1, s2, s3);
+	}
+
+	@Nonnull
+	@Override
+	public RandomSource split() {
+		return newXoshiro256(nextLong());
+	}
+}
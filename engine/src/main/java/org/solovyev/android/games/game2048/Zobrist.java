@@ -0,0 +1,57 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Random keys for Zobrist hashing of boards: hash of a board is XOR of the size key and the keys of all its cells. Keys
+ * are the same in every run.
+ */
+final class Zobrist {
+
+	// values of cells are longs => exponents are in [Cell.WALL, 62]
+	static final int EXPONENTS = 64;
+
+	private static final long SEED = 0x2048;
+
+	// keys are the same for the same size: threads which find no keys compute them independently and one of the arrays
+	// is cached, no locks are needed
+	@Nonnull
+	private static final AtomicReferenceArray<long[]> cache = new AtomicReferenceArray<long[]>(16);
+
+	private Zobrist() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * @return keys of the cells of a board with the given <var>size</var>, key of exponent <var>e</var> of cell
+	 * <var>i</var> is stored at <code>i * EXPONENTS + e - Cell.WALL</code>. Last element is the key of the size. Keys
+	 * must not be modified.
+	 */
+	@Nonnull
+	static long[] getKeys(int size) {
+		if (size < cache.length()) {
+			final long[] keys = cache.get(size);
+			if (keys != null) {
+				return keys;
+			}
+			cache.compareAndSet(size, null, newKeys(size));
+			return cache.get(size);
+		}
+		return newKeys(size);
+	}
+
+	@Nonnull
+	private static long[] newKeys(int size) {
+		final long[] state = {SEED ^ size};
+		final long[] keys = new long[size * size * EXPONENTS + 1];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = RandomSources.nextSplitMix64(state);
+		}
+		// empty cells don't change the hash
+		for (int i = 0; i < size * size; i++) {
+			keys[i * EXPONENTS + Cell.NO_VALUE - Cell.WALL] = 0;
+		}
+		return keys;
+	}
+}
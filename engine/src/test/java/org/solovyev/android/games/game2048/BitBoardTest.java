@@ -0,0 +1,201 @@
+package org.solovyev.android.games.game2048;
+
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BitBoardTest {
+
+	private static final int SIZE = BitBoard.SIZE;
+
+	@Test
+	public void testShouldMoveAsSegmentsOnRandomBoards() throws Exception {
+		final Random random = new Random(2048);
+		final Moves expected = Moves.newMoves();
+		final Moves actual = Moves.newMoves();
+		for (int n = 0; n < 20000; n++) {
+			final boolean withWalls = n % 2 == 1;
+			final byte[] cells = newRandomCells(random, withWalls);
+			for (Direction direction : Direction.values()) {
+				final Board expectedBoard = Board.fromCells(SIZE, withWalls, cells);
+				expected.clear(cells.length);
+				Game.newGame(expectedBoard, Difficulty.normal).goSegments(expected, direction);
+
+				final Board actualBoard = Board.fromCells(SIZE, withWalls, cells);
+				actual.clear(cells.length);
+				assertTrue(BitBoard.go(actualBoard, direction, actual));
+
+				final String message = Arrays.toString(cells) + " " + direction;
+				assertArrayEquals(message, expectedBoard.cells, actualBoard.cells);
+				assertMovesEquals(message, expected, actual);
+
+				final byte[] referenceCells = cells.clone();
+				assertEquals(message, move(referenceCells, direction), actual.getPoints());
+				assertArrayEquals(message, referenceCells, actualBoard.cells);
+				assertEquals(message, expectedBoard.getHash(), actualBoard.getHash());
+			}
+		}
+	}
+
+	@Test
+	public void testShouldMergeEachCellOnce() throws Exception {
+		final Board board = Board.fromCells(SIZE, false, new byte[]{
+				1, 1, 1, 1,
+				1, 1, 2, 2,
+				2, 1, 1, 0,
+				3, 0, 3, 3});
+		final Moves moves = Moves.newMoves();
+		moves.clear(SIZE * SIZE);
+		assertTrue(BitBoard.go(board, Direction.left, moves));
+
+		assertArrayEquals(new byte[]{
+				2, 2, 0, 0,
+				2, 3, 0, 0,
+				2, 2, 0, 0,
+				4, 3, 0, 0}, board.cells);
+		assertEquals(4 + 4 + 4 + 8 + 4 + 16, moves.getPoints());
+
+		// first line: [1, 1, 1, 1] -> [2, 2]
+		assertMove(moves, 0, 1, 0, 2, true);
+		assertMove(moves, 1, 2, 1, 1, false);
+		assertMove(moves, 2, 3, 1, 2, true);
+	}
+
+	@Test
+	public void testShouldNotMoveWalls() throws Exception {
+		final Board board = Board.fromCells(SIZE, true, new byte[]{
+				1, Cell.WALL, 1, 1,
+				0, 0, 0, 0,
+				0, 0, 0, 0,
+				0, 0, 0, 0});
+		final Moves moves = Moves.newMoves();
+		moves.clear(SIZE * SIZE);
+		assertTrue(BitBoard.go(board, Direction.left, moves));
+
+		assertArrayEquals(new byte[]{
+				1, Cell.WALL, 2, 0,
+				0, 0, 0, 0,
+				0, 0, 0, 0,
+				0, 0, 0, 0}, board.cells);
+		assertEquals(1, moves.size());
+		assertMove(moves, 0, 3, 2, 2, true);
+	}
+
+	@Test
+	public void testShouldNotMoveBoardsWhichCantBePacked() throws Exception {
+		final byte[] cells = new byte[SIZE * SIZE];
+		cells[1] = 14;
+		final Board board = Board.fromCells(SIZE, false, cells);
+		final Moves moves = Moves.newMoves();
+		moves.clear(SIZE * SIZE);
+		assertFalse(BitBoard.go(board, Direction.left, moves));
+		assertArrayEquals(cells, board.cells);
+		assertTrue(moves.isEmpty());
+	}
+
+	private static void assertMove(@Nonnull Moves moves, int i, int from, int to, int exponent, boolean merge) {
+		assertEquals(from, moves.getFrom(i));
+		assertEquals(to, moves.getTo(i));
+		assertEquals(exponent, moves.getExponent(i));
+		assertEquals(merge, moves.isMerge(i));
+	}
+
+	private static void assertMovesEquals(@Nonnull String message, @Nonnull Moves expected, @Nonnull Moves actual) {
+		assertEquals(message, expected.size(), actual.size());
+		assertEquals(message, expected.getPoints(), actual.getPoints());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(message, expected.getFrom(i), actual.getFrom(i));
+			assertEquals(message, expected.getTo(i), actual.getTo(i));
+			assertEquals(message, expected.getExponent(i), actual.getExponent(i));
+			assertEquals(message, expected.isMerge(i), actual.isMerge(i));
+		}
+	}
+
+	@Nonnull
+	private static byte[] newRandomCells(@Nonnull Random random, boolean withWalls) {
+		final byte[] cells = new byte[SIZE * SIZE];
+		for (int i = 0; i < cells.length; i++) {
+			final int r = random.nextInt(10);
+			if (withWalls && r == 0) {
+				cells[i] = Cell.WALL;
+			} else if (r < 4) {
+				cells[i] = Cell.NO_VALUE;
+			} else {
+				// small exponents produce more merges
+				cells[i] = (byte) (1 + random.nextInt(random.nextBoolean() ? 3 : 13));
+			}
+		}
+		return cells;
+	}
+
+	/**
+	 * Straightforward implementation of a move: cells of each part of a line between walls are shifted towards its
+	 * beginning and equal neighbours are merged once
+	 *
+	 * @return points of the move
+	 */
+	private static long move(@Nonnull byte[] cells, @Nonnull Direction direction) {
+		long points = 0;
+		for (int line = 0; line < SIZE; line++) {
+			for (int start = 0; start < SIZE; ) {
+				if (cells[index(direction, line, start)] == Cell.WALL) {
+					start++;
+					continue;
+				}
+				int end = start;
+				while (end < SIZE && cells[index(direction, line, end)] != Cell.WALL) {
+					end++;
+				}
+
+				final byte[] values = new byte[end - start];
+				int count = 0;
+				for (int k = start; k < end; k++) {
+					final byte cell = cells[index(direction, line, k)];
+					if (cell != Cell.NO_VALUE) {
+						values[count++] = cell;
+					}
+				}
+
+				int target = start;
+				for (int i = 0; i < count; i++, target++) {
+					if (i + 1 < count && values[i] == values[i + 1]) {
+						final byte merged = (byte) (values[i] + 1);
+						cells[index(direction, line, target)] = merged;
+						points += Cell.toValue(merged);
+						i++;
+					} else {
+						cells[index(direction, line, target)] = values[i];
+					}
+				}
+				for (; target < end; target++) {
+					cells[index(direction, line, target)] = Cell.NO_VALUE;
+				}
+				start = end;
+			}
+		}
+		return points;
+	}
+
+	/**
+	 * @return index of the <var>k</var>-th cell of <var>line</var> counting from the side to which the cells move
+	 */
+	private static int index(@Nonnull Direction direction, int line, int k) {
+		switch (direction) {
+			case left:
+				return line * SIZE + k;
+			case right:
+				return line * SIZE + SIZE - 1 - k;
+			case up:
+				return k * SIZE + line;
+			default:
+				return (SIZE - 1 - k) * SIZE + line;
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package org.solovyev.android.games.game2048;
+
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentTranspositionTableTest {
+
+	private static final int THREADS = 8;
+	private static final int KEYS = 4096;
+	private static final int OPERATIONS = 500000;
+
+	@Test
+	public void testShouldReturnStoredValues() throws Exception {
+		final ConcurrentTranspositionTable table = ConcurrentTranspositionTable.newConcurrentTranspositionTable(16);
+		table.put(42, 3, 0.5);
+		assertEquals(0.5, table.get(42, 3), 0);
+		assertEquals(0.5, table.get(42, 1), 0);
+		assertTrue(Double.isNaN(table.get(42, 4)));
+		assertTrue(Double.isNaN(table.get(43, 1)));
+
+		table.clear();
+		assertTrue(Double.isNaN(table.get(42, 1)));
+	}
+
+	@Test
+	public void testShouldKeepDeeperValues() throws Exception {
+		final ConcurrentTranspositionTable table = ConcurrentTranspositionTable.newConcurrentTranspositionTable(16);
+		table.put(42, 5, 0.5);
+		table.put(42, 2, 0.25);
+		assertEquals(0.5, table.get(42, 5), 0);
+		assertEquals(0.5, table.get(42, 2), 0);
+
+		table.put(42, 6, 0.75);
+		assertEquals(0.75, table.get(42, 6), 0);
+	}
+
+	@Test
+	public void testShouldNotReturnValuesOfOtherKeysWhenUsedConcurrently() throws Exception {
+		// few buckets for many keys: entries are overwritten all the time
+		final ConcurrentTranspositionTable table = ConcurrentTranspositionTable.newConcurrentTranspositionTable(64);
+		final long[] keys = new long[KEYS];
+		final Random random = new Random(2048);
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = random.nextLong();
+		}
+
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		final AtomicLong hits = new AtomicLong();
+		final List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < THREADS; t++) {
+			final int thread = t;
+			threads.add(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						storeAndProbe(table, keys, thread, failure, hits);
+					} catch (InterruptedException e) {
+						failure.compareAndSet(null, e.toString());
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertNull(failure.get(), failure.get());
+		assertTrue(hits.get() > 0);
+	}
+
+	private static void storeAndProbe(@Nonnull TranspositionTable table, @Nonnull long[] keys, int thread,
+									  @Nonnull AtomicReference<String> failure, @Nonnull AtomicLong hits) {
+		final Random random = new Random(thread);
+		long threadHits = 0;
+		for (int n = 0; n < OPERATIONS && failure.get() == null; n++) {
+			final int k = random.nextInt(keys.length);
+			final long key = keys[k];
+			if (random.nextBoolean()) {
+				table.put(key, 1 + random.nextInt(10), valueOf(k, thread));
+			} else {
+				final double value = table.get(key, 1);
+				if (!Double.isNaN(value)) {
+					threadHits++;
+					// values are exact in float: key's index is restored exactly
+					if (value != Math.floor(value) || (int) value / THREADS != k) {
+						failure.compareAndSet(null, "Value " + value + " returned for key #" + k);
+					}
+				}
+			}
+		}
+		hits.addAndGet(threadHits);
+	}
+
+	private static double valueOf(int key, int thread) {
+		return key * THREADS + thread;
+	}
+}
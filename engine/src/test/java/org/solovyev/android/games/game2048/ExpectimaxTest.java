@@ -0,0 +1,204 @@
+package org.solovyev.android.games.game2048;
+
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ExpectimaxTest {
+
+	private static final byte W = Cell.WALL;
+
+	private static final long BUDGET = TimeUnit.MILLISECONDS.toNanos(50);
+
+	@Test
+	public void testShouldFindOnlyMove() throws Exception {
+		// the wall below the empty corner leaves only a move to the left
+		final Game game = newGame(4, true, new byte[]{
+				0, 1, 2, 1,
+				W, 3, 1, 2,
+				1, 2, 3, 1,
+				2, 1, 2, 3});
+		assertEquals(1, countMoves(game));
+		assertSame(Direction.left, newExpectimax().findBestMove(game, BUDGET));
+		final ParallelExpectimax parallel = newParallelExpectimax();
+		try {
+			assertSame(Direction.left, parallel.findBestMove(game, BUDGET));
+		} finally {
+			parallel.shutdown();
+		}
+	}
+
+	@Test
+	public void testShouldReturnNothingIfGameIsOver() throws Exception {
+		final Game game = newGame(4, true, new byte[]{
+				0, W, 1, 2,
+				W, 1, 2, 1,
+				1, 2, 1, 2,
+				2, 1, 2, 1});
+		assertTrue(game.isOver());
+		assertNull(newExpectimax().findBestMove(game, BUDGET));
+		final ParallelExpectimax parallel = newParallelExpectimax();
+		try {
+			assertNull(parallel.findBestMove(game, BUDGET));
+		} finally {
+			parallel.shutdown();
+		}
+	}
+
+	@Test
+	public void testShouldFindPossibleMovesOnBoardsWithWalls() throws Exception {
+		final Random random = new Random(2048);
+		final Expectimax expectimax = newExpectimax();
+		final ParallelExpectimax parallel = newParallelExpectimax();
+		try {
+			for (int n = 0; n < 20; n++) {
+				final int size = 4 + random.nextInt(3);
+				final Game game = newGame(size, true, newRandomCells(random, size));
+				final String message = Arrays.toString(game.getBoard().cells);
+				if (game.isOver()) {
+					continue;
+				}
+				assertMoves(message, game, expectimax.findBestMove(game, BUDGET));
+				assertMoves(message, game, parallel.findBestMove(game, BUDGET));
+			}
+		} finally {
+			parallel.shutdown();
+		}
+	}
+
+	@Test
+	public void testShouldStopAtTimeBudget() throws Exception {
+		final Game game = Game.newGame(6, true, Difficulty.hard, 1);
+		final long budget = TimeUnit.MILLISECONDS.toNanos(100);
+		// the first iteration always completes, deeper ones are interrupted
+		final long slack = TimeUnit.MILLISECONDS.toNanos(500);
+
+		long start = System.nanoTime();
+		assertNotNull(newExpectimax().findBestMove(game, budget));
+		long elapsed = System.nanoTime() - start;
+		assertTrue("Elapsed " + elapsed, elapsed < budget + slack);
+
+		final ParallelExpectimax parallel = newParallelExpectimax();
+		try {
+			start = System.nanoTime();
+			assertNotNull(parallel.findBestMove(game, budget));
+			elapsed = System.nanoTime() - start;
+			assertTrue("Elapsed " + elapsed, elapsed < budget + slack);
+		} finally {
+			parallel.shutdown();
+		}
+	}
+
+	@Test
+	public void testShouldEnumerateAllCombinationsOfNewCells() throws Exception {
+		final RandomSource random = RandomSources.newRandomSource();
+		final byte[] cells = new byte[]{
+				0, W, 1, 0,
+				W, 0, 2, 1,
+				0, 2, 0, 2,
+				1, 0, W, 0};
+		for (int newCells = 1; newCells <= 4; newCells++) {
+			final Board board = Board.fromCells(4, true, cells);
+			final int emptyCount = board.getEmptyCount();
+			final int[] empty = new int[emptyCount];
+			for (int i = 0; i < emptyCount; i++) {
+				empty[i] = board.getEmptyCell(i);
+			}
+
+			final int combinations = Expectimax.getCombinations(emptyCount, newCells, Integer.MAX_VALUE);
+			assertEquals(combinations, Expectimax.getOutcomes(emptyCount, newCells, combinations));
+			final Set<String> spawned = new HashSet<String>();
+			for (int outcome = 0; outcome < combinations; outcome++) {
+				final Board child = board.copy();
+				Expectimax.spawn(child, outcome, combinations, empty, emptyCount, newCells, random);
+				assertEquals(emptyCount - newCells, child.getEmptyCount());
+				for (int i = 0; i < cells.length; i++) {
+					if (cells[i] != Cell.NO_VALUE) {
+						// walls and old cells stay where they are
+						assertEquals(cells[i], child.cells[i]);
+					}
+				}
+				spawned.add(Arrays.toString(child.cells));
+			}
+			assertEquals(combinations, spawned.size());
+		}
+	}
+
+	@Test
+	public void testShouldCountCombinations() throws Exception {
+		assertEquals(1, Expectimax.getCombinations(5, 0, 16));
+		assertEquals(5, Expectimax.getCombinations(5, 1, 16));
+		assertEquals(10, Expectimax.getCombinations(5, 2, 16));
+		assertEquals(10, Expectimax.getCombinations(5, 3, 16));
+		assertEquals(1, Expectimax.getCombinations(5, 5, 16));
+		assertEquals(0, Expectimax.getCombinations(5, 6, 16));
+		assertEquals(17, Expectimax.getCombinations(7, 3, 16));
+		assertEquals(17, Expectimax.getCombinations(81, 5, 16));
+
+		assertEquals(6, Expectimax.getOutcomes(4, 2, 16));
+		assertEquals(16, Expectimax.getOutcomes(16, 1, 16));
+		assertEquals(16, Expectimax.getOutcomes(17, 1, 16));
+		assertEquals(16, Expectimax.getOutcomes(7, 3, 16));
+	}
+
+	private static void assertMoves(@Nonnull String message, @Nonnull Game game, Direction direction) {
+		assertNotNull(message, direction);
+		final Moves moves = Moves.newMoves();
+		game.copy().go(direction, moves);
+		assertTrue(message + " " + direction, !moves.isEmpty());
+	}
+
+	private static int countMoves(@Nonnull Game game) {
+		final Moves moves = Moves.newMoves();
+		int count = 0;
+		for (Direction direction : Direction.values()) {
+			game.copy().go(direction, moves);
+			if (!moves.isEmpty()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Nonnull
+	private static Expectimax newExpectimax() {
+		return Expectimax.newExpectimax(HeuristicEvaluator.getInstance());
+	}
+
+	@Nonnull
+	private static ParallelExpectimax newParallelExpectimax() {
+		return ParallelExpectimax.newParallelExpectimax(HeuristicEvaluator.getInstance(), 2);
+	}
+
+	@Nonnull
+	private static Game newGame(int size, boolean withWalls, @Nonnull byte[] cells) {
+		return Game.newGame(Board.fromCells(size, withWalls, cells), Difficulty.normal);
+	}
+
+	@Nonnull
+	private static byte[] newRandomCells(@Nonnull Random random, int size) {
+		final byte[] cells = new byte[size * size];
+		for (int i = 0; i < cells.length; i++) {
+			final int r = random.nextInt(10);
+			if (r < 2) {
+				cells[i] = Cell.WALL;
+			} else if (r < 4) {
+				cells[i] = Cell.NO_VALUE;
+			} else {
+				cells[i] = (byte) (1 + random.nextInt(8));
+			}
+		}
+		return cells;
+	}
+}
@@ -0,0 +1,161 @@
+package org.solovyev.android.games.game2048;
+
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class GameSnapshotTest {
+
+	// positions in the header
+	private static final int VERSION = 4;
+	private static final int SIZE = 5;
+	private static final int FLAGS = 7;
+
+	private static final int FLAG_BYTE_EXPONENTS = 2;
+
+	@Test
+	public void testShouldRestoreSavedGames() throws Exception {
+		final Random random = new Random(2048);
+		for (int size = 1; size <= 9; size++) {
+			for (int n = 0; n < 100; n++) {
+				final boolean withWalls = n % 2 == 1;
+				final boolean byteExponents = n % 4 >= 2;
+				final Game game = newRandomGame(random, size, withWalls, byteExponents);
+				assertRestored(game, GameSnapshot.fromBytes(GameSnapshot.toBytes(game)));
+			}
+		}
+	}
+
+	@Test
+	public void testShouldStoreNibblesIfPossible() throws Exception {
+		final Game nibbles = newGame(3, false, 15);
+		final Game bytes = newGame(3, false, 16);
+		// 9 cells: 5 bytes of nibbles or 9 bytes
+		assertEquals(4, GameSnapshot.toBytes(bytes).length - GameSnapshot.toBytes(nibbles).length);
+		assertRestored(nibbles, GameSnapshot.fromBytes(GameSnapshot.toBytes(nibbles)));
+		assertRestored(bytes, GameSnapshot.fromBytes(GameSnapshot.toBytes(bytes)));
+	}
+
+	@Test
+	public void testShouldRejectCorruptedSnapshots() throws Exception {
+		final byte[] bytes = GameSnapshot.toBytes(newGame(5, true, 17));
+		for (int i = 0; i < bytes.length; i++) {
+			for (int bit = 0; bit < 8; bit++) {
+				final byte[] corrupted = bytes.clone();
+				corrupted[i] ^= 1 << bit;
+				final String message;
+				if (i < VERSION) {
+					message = "Not a game snapshot";
+				} else if (i == VERSION) {
+					message = "Unsupported version " + corrupted[i];
+				} else if (i == SIZE) {
+					message = "Invalid size " + (corrupted[i] & 0xFF);
+				} else if (i == FLAGS && 1 << bit == FLAG_BYTE_EXPONENTS) {
+					// exponents are expected to be stored as nibbles
+					message = "Invalid size 5";
+				} else {
+					message = "Checksum mismatch";
+				}
+				assertRejected(corrupted, message);
+			}
+		}
+	}
+
+	@Test
+	public void testShouldRejectOtherVersions() throws Exception {
+		final byte[] bytes = GameSnapshot.toBytes(newGame(4, false, 3));
+		bytes[VERSION]++;
+		assertRejected(bytes, "Unsupported version 2");
+	}
+
+	@Test
+	public void testShouldRejectWrongSizes() throws Exception {
+		final byte[] bytes = GameSnapshot.toBytes(newGame(4, false, 3));
+
+		final byte[] bigger = bytes.clone();
+		bigger[SIZE]++;
+		assertRejected(bigger, "Invalid size 5");
+
+		final byte[] empty = bytes.clone();
+		empty[SIZE] = 0;
+		assertRejected(empty, "Invalid size 0");
+
+		assertRejected(Arrays.copyOf(bytes, bytes.length - 1), "Invalid size 4");
+		assertRejected(Arrays.copyOf(bytes, bytes.length + 1), "Invalid size 4");
+	}
+
+	@Test
+	public void testShouldRejectOtherData() throws Exception {
+		final byte[] json = Game.newGame(4, false, Difficulty.normal, 1).toJson().toString().getBytes("UTF-8");
+		assertFalse(GameSnapshot.isSnapshot(json));
+		assertRejected(json, "Not a game snapshot");
+		assertRejected(new byte[0], "Not a game snapshot");
+	}
+
+	private static void assertRejected(@Nonnull byte[] bytes, @Nonnull String message) {
+		try {
+			GameSnapshot.fromBytes(bytes);
+			fail("Expected: " + message);
+		} catch (IOException e) {
+			assertEquals(message, e.getMessage());
+		}
+	}
+
+	private static void assertRestored(@Nonnull Game expected, @Nonnull Game actual) {
+		final Board expectedBoard = expected.getBoard();
+		final Board actualBoard = actual.getBoard();
+		final String message = Arrays.toString(expectedBoard.cells);
+		assertEquals(message, expectedBoard.getSize(), actualBoard.getSize());
+		assertEquals(message, expectedBoard.withWalls, actualBoard.withWalls);
+		assertArrayEquals(message, expectedBoard.cells, actualBoard.cells);
+		assertEquals(message, expectedBoard.getHash(), actualBoard.getHash());
+		assertEquals(message, expectedBoard.getEmptyCount(), actualBoard.getEmptyCount());
+		assertEquals(message, expected.getScore().getPoints(), actual.getScore().getPoints());
+		assertEquals(message, expected.getStartDate(), actual.getStartDate());
+		assertSame(message, expected.getDifficulty(), actual.getDifficulty());
+	}
+
+	/**
+	 * @return game with a wall (if <var>withWalls</var>) and a cell of <var>maxExponent</var> among small cells
+	 */
+	@Nonnull
+	private static Game newGame(int size, boolean withWalls, int maxExponent) {
+		final byte[] cells = new byte[size * size];
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = (byte) (i % 3);
+		}
+		cells[cells.length - 1] = (byte) maxExponent;
+		if (withWalls) {
+			cells[0] = Cell.WALL;
+		}
+		return Game.newGame(Board.fromCells(size, withWalls, cells), Score.newScore(1234), new Date(1000), Difficulty.hard);
+	}
+
+	@Nonnull
+	private static Game newRandomGame(@Nonnull Random random, int size, boolean withWalls, boolean byteExponents) {
+		final byte[] cells = new byte[size * size];
+		for (int i = 0; i < cells.length; i++) {
+			final int r = random.nextInt(10);
+			if (withWalls && r == 0) {
+				cells[i] = Cell.WALL;
+			} else if (r >= 4) {
+				cells[i] = (byte) (1 + random.nextInt(byteExponents ? Zobrist.EXPONENTS - 2 : 15));
+			}
+		}
+		final Difficulty[] difficulties = Difficulty.values();
+		final Difficulty difficulty = difficulties[random.nextInt(difficulties.length)];
+		final Score score = Score.newScore(random.nextInt(Integer.MAX_VALUE) * (long) random.nextInt(1000));
+		final Date startDate = new Date(1 + random.nextInt(Integer.MAX_VALUE) * 1000L);
+		return Game.newGame(Board.fromCells(size, withWalls, cells), score, startDate, difficulty);
+	}
+}
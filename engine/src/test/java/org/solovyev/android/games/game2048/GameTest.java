@@ -0,0 +1,113 @@
+package org.solovyev.android.games.game2048;
+
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GameTest {
+
+	private static final byte W = Cell.WALL;
+
+	@Test
+	public void testShouldBeOverIfFullBoardHasNoMoves() throws Exception {
+		final Game game = newGame(4, false, new byte[]{
+				1, 2, 1, 2,
+				2, 1, 2, 1,
+				1, 2, 1, 2,
+				2, 1, 2, 1});
+		assertOver(true, game);
+	}
+
+	@Test
+	public void testShouldNotBeOverIfFullBoardHasEqualPair() throws Exception {
+		final Game game = newGame(4, false, new byte[]{
+				1, 2, 1, 2,
+				2, 1, 2, 1,
+				1, 2, 1, 2,
+				2, 1, 2, 2});
+		assertOver(false, game);
+	}
+
+	@Test
+	public void testShouldBeOverIfEmptyCellIsEnclosedByWalls() throws Exception {
+		// no cell can move to the empty corner
+		final Game game = newGame(4, true, new byte[]{
+				0, W, 1, 2,
+				W, 1, 2, 1,
+				1, 2, 1, 2,
+				2, 1, 2, 1});
+		assertOver(true, game);
+	}
+
+	@Test
+	public void testShouldNotBeOverIfEmptyCellIsNextToValue() throws Exception {
+		final Game game = newGame(4, true, new byte[]{
+				0, W, 1, 2,
+				1, W, 2, 1,
+				2, 1, W, 2,
+				1, 2, 1, W});
+		assertOver(false, game);
+	}
+
+	@Test
+	public void testShouldMatchFullScanDuringGames() throws Exception {
+		final Random random = new Random(2048);
+		final Moves moves = Moves.newMoves();
+		for (int n = 0; n < 200; n++) {
+			// random moves on big boards take too long to end the game
+			final Game game = Game.newGame(3 + n % 4, n % 2 == 0, Difficulty.values()[n % 3], n);
+			for (int turn = 0; turn < 5000 && !game.isOver(); turn++) {
+				assertEquals(game.isOverFullScan(), !game.getBoard().canMove());
+				game.go(Direction.values()[random.nextInt(4)], moves);
+				if (!moves.isEmpty()) {
+					game.prepareNextTurn();
+				}
+			}
+			assertEquals(game.isOverFullScan(), !game.getBoard().canMove());
+		}
+	}
+
+	@Test
+	public void testShouldVerifyGameOverIfEnabled() throws Exception {
+		final Game game = newGame(2, false, new byte[]{
+				1, 2,
+				2, 1});
+		// cells are changed behind the board's back: its counters still say the game is over
+		game.getBoard().cells[0] = 2;
+
+		Game.setVerifyGameOver(false);
+		try {
+			assertTrue(game.isOver());
+			Game.setVerifyGameOver(true);
+			game.isOver();
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		} finally {
+			Game.setVerifyGameOver(Game.class.desiredAssertionStatus());
+		}
+	}
+
+	private static void assertOver(boolean expected, @Nonnull Game game) {
+		assertEquals(expected, game.isOverFullScan());
+		assertEquals(expected, !game.getBoard().canMove());
+		assertEquals(expected, game.isOver());
+		if (expected) {
+			final Moves moves = Moves.newMoves();
+			for (Direction direction : Direction.values()) {
+				game.go(direction, moves);
+				assertTrue(moves.isEmpty());
+			}
+		}
+	}
+
+	@Nonnull
+	private static Game newGame(int size, boolean withWalls, @Nonnull byte[] cells) {
+		return Game.newGame(Board.fromCells(size, withWalls, cells), Difficulty.normal);
+	}
+}
@@ -0,0 +1,218 @@
+package org.solovyev.android.games.game2048;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Date;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class JsonGameReaderTest {
+
+	private static final String BOARD = "{\"size\":2,\"cells\":\"2,-1;0,4\"}";
+	private static final String SCORE = "{\"points\":12}";
+
+	@Test
+	public void testShouldReadSavedGames() throws Exception {
+		final Random random = new Random(2048);
+		for (int size = 4; size <= 9; size++) {
+			for (Difficulty difficulty : Difficulty.values()) {
+				for (int n = 0; n < 20; n++) {
+					final boolean withWalls = n % 2 == 1;
+					final Game game = n < 10 ? newPlayedGame(random, size, withWalls, difficulty) : newRandomGame(random, size, withWalls, difficulty);
+					final String json = game.toJson();
+					final Game read = JsonGameReader.read(json);
+					assertNotNull(json, read);
+					assertSameGame(json, game, read);
+					assertSameGame(json, Game.fromJson(json), read);
+
+					final String board = new JSONObject(json).getJSONObject(Game.JSON_BOARD).toString();
+					assertSameBoard(board, Board.fromJson(new JSONObject(board)), JsonGameReader.readBoard(board));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testShouldReadKeysInAnyOrder() throws Exception {
+		assertReadSame("{\"difficulty\":\"hard\",\"board\":" + BOARD + ",\"score\":" + SCORE + ",\"startDate\":1000}");
+		assertReadSame("{\"startDate\":1000,\"score\":" + SCORE + ",\"board\":" + BOARD + ",\"difficulty\":\"hard\"}");
+		assertReadSame("{\"board\":{\"cells\":\"2,-1;0,4\",\"size\":2},\"difficulty\":\"easy\",\"score\":" + SCORE + "}");
+	}
+
+	@Test
+	public void testShouldSkipUnknownFields() throws Exception {
+		assertReadSame("{\"version\":3,\"difficulty\":\"hard\",\"board\":" + BOARD + ",\"score\":" + SCORE + "}");
+		assertReadSame("{\"difficulty\":\"hard\",\"extra\":{\"a\":[1,2.5e3,{\"b\":[]},[]],\"c\":null,\"d\":true,\"e\":\"}\"},\"board\":" + BOARD + ",\"score\":" + SCORE + "}");
+		assertReadSame("{\"difficulty\":\"hard\",\"board\":{\"size\":2,\"walls\":false,\"cells\":\"2,-1;0,4\",\"history\":[\"0,0;0,0\"]},\"score\":{\"best\":100,\"points\":12}}");
+		assertReadSame("{\"difficulty\":\"hard\",\"board\":" + BOARD + ",\"score\":" + SCORE + ",\"startDate\":1000,\"nested\":{\"difficulty\":\"easy\",\"board\":{}}}");
+	}
+
+	@Test
+	public void testShouldSkipWhitespace() throws Exception {
+		assertReadSame(" {\n\t\"difficulty\" : \"hard\" ,\r\n \"board\" : { \"size\" : 2 , \"cells\" : \"2,-1;0,4\" } ,\n\"score\":{ \"points\" :12 } , \"startDate\" : 1000 }\n");
+	}
+
+	@Test
+	public void testShouldSkipEscapedStrings() throws Exception {
+		assertReadSame("{\"note\":\"quote \\\" and backslash \\\\\",\"difficulty\":\"hard\",\"board\":" + BOARD + ",\"score\":" + SCORE + "}");
+		assertReadSame("{\"difficulty\":\"hard\",\"board\":" + BOARD + ",\"score\":" + SCORE + ",\"\\u0041\":\"\\\"}\"}");
+	}
+
+	@Test
+	public void testShouldReadWalls() throws Exception {
+		final Game game = assertReadSame("{\"difficulty\":\"hard\",\"board\":{\"size\":2,\"cells\":\"-1,-1;0,2\"},\"score\":" + SCORE + "}");
+		assertArrayEquals(new byte[]{Cell.WALL, Cell.WALL, Cell.NO_VALUE, 1}, game.getBoard().cells);
+		assertEquals(true, game.getBoard().withWalls);
+
+		assertBothRejected("{\"difficulty\":\"hard\",\"board\":{\"size\":2,\"cells\":\"-2,0;0,2\"},\"score\":" + SCORE + "}");
+		assertBothRejected("{\"difficulty\":\"hard\",\"board\":{\"size\":2,\"cells\":\"-4,0;0,2\"},\"score\":" + SCORE + "}");
+		assertBothRejected("{\"difficulty\":\"hard\",\"board\":{\"size\":2,\"cells\":\"3,0;0,2\"},\"score\":" + SCORE + "}");
+	}
+
+	@Test
+	public void testShouldReturnNothingIfFieldsAreMissing() throws Exception {
+		assertReadSame("{}");
+		assertReadSame("{\"board\":" + BOARD + ",\"score\":" + SCORE + "}");
+		assertReadSame("{\"difficulty\":\"hard\",\"score\":" + SCORE + "}");
+		assertReadSame("{\"difficulty\":\"hard\",\"board\":" + BOARD + "}");
+	}
+
+	@Test
+	public void testShouldRejectInvalidGames() throws Exception {
+		assertBothRejected("{\"difficulty\":\"impossible\",\"board\":" + BOARD + ",\"score\":" + SCORE + "}");
+		assertBothRejected("{\"difficulty\":\"hard\",\"board\":{\"cells\":\"2,-1;0,4\"},\"score\":" + SCORE + "}");
+		assertBothRejected("{\"difficulty\":\"hard\",\"board\":{\"size\":2},\"score\":" + SCORE + "}");
+		assertBothRejected("{\"difficulty\":\"hard\",\"board\":" + BOARD + ",\"score\":{}}");
+		assertBothRejected("{\"difficulty\":\"hard\",\"board\":{\"size\":2,\"cells\":\"2,x;0,4\"},\"score\":" + SCORE + "}");
+		assertBothRejected("{\"difficulty\":\"hard\",\"board\":{\"size\":2,\"cells\":\"2,-1;0,4,8\"},\"score\":" + SCORE + "}");
+		assertBothRejected("{\"difficulty\":\"hard\",\"board\":{\"size\":2,\"cells\":\"2,-1;0,4;0,0\"},\"score\":" + SCORE + "}");
+		assertBothRejected("{\"difficulty\":\"hard\",\"board\":{\"size\":2,\"cells\":\"2,-1;0,99999999999999999999\"},\"score\":" + SCORE + "}");
+		assertBothRejected("{\"difficulty\":\"hard\",\"board\":" + BOARD + ",\"score\":{\"points\":\"many\"}}");
+		assertBothRejected("[]");
+		assertBothRejected("");
+	}
+
+	@Test
+	public void testShouldRejectTruncatedGames() throws Exception {
+		final String json = Game.newGame(5, true, Difficulty.normal, 1).toJson();
+		// the last character closes the game
+		for (int length = 0; length < json.length(); length++) {
+			assertRejected(json.substring(0, length));
+		}
+	}
+
+	@Test
+	public void testShouldRejectTrailingCharacters() throws Exception {
+		final String json = Game.newGame(5, true, Difficulty.normal, 1).toJson();
+		// org.json stops at the end of the object: the reader is stricter
+		assertRejected(json + "}");
+		assertRejected(json + json);
+		assertRejected(json + ",");
+		assertRejected(BOARD + "x", true);
+		assertSameGame(json, JsonGameReader.read(json), JsonGameReader.read(json + " \n"));
+	}
+
+	@Nullable
+	private static Game assertReadSame(@Nonnull String json) throws JSONException {
+		final Game expected = Game.fromJson(json);
+		final Game actual = JsonGameReader.read(json);
+		if (expected == null) {
+			assertNull(json, actual);
+		} else {
+			assertNotNull(json, actual);
+			assertSameGame(json, expected, actual);
+		}
+		return actual;
+	}
+
+	private static void assertBothRejected(@Nonnull String json) {
+		try {
+			Game.fromJson(json);
+			fail("Expected to be rejected by org.json: " + json);
+		} catch (JSONException e) {
+			// expected
+		} catch (RuntimeException e) {
+			// unknown enum constants and unparsable numbers
+		}
+		assertRejected(json);
+	}
+
+	private static void assertRejected(@Nonnull String json) {
+		assertRejected(json, false);
+	}
+
+	private static void assertRejected(@Nonnull String json, boolean board) {
+		try {
+			if (board) {
+				JsonGameReader.readBoard(json);
+			} else {
+				JsonGameReader.read(json);
+			}
+			fail("Expected to be rejected: " + json);
+		} catch (JSONException e) {
+			// expected
+		}
+	}
+
+	private static void assertSameGame(@Nonnull String message, @Nonnull Game expected, @Nonnull Game actual) {
+		assertSameBoard(message, expected.getBoard(), actual.getBoard());
+		assertEquals(message, expected.getScore().getPoints(), actual.getScore().getPoints());
+		assertSame(message, expected.getDifficulty(), actual.getDifficulty());
+		// missing dates are replaced by the current time
+		if (message.contains(Game.JSON_START_DATE)) {
+			assertEquals(message, expected.getStartDate(), actual.getStartDate());
+		}
+	}
+
+	private static void assertSameBoard(@Nonnull String message, @Nonnull Board expected, @Nonnull Board actual) {
+		assertEquals(message, expected.getSize(), actual.getSize());
+		assertEquals(message, expected.withWalls, actual.withWalls);
+		assertArrayEquals(message, expected.cells, actual.cells);
+		assertEquals(message, expected.getHash(), actual.getHash());
+		assertEquals(message, expected.getEmptyCount(), actual.getEmptyCount());
+		assertEquals(message, expected.canMove(), actual.canMove());
+	}
+
+	@Nonnull
+	private static Game newPlayedGame(@Nonnull Random random, int size, boolean withWalls, @Nonnull Difficulty difficulty) {
+		final Game game = Game.newGame(size, withWalls, difficulty, random.nextLong());
+		final Moves moves = Moves.newMoves();
+		for (int turn = random.nextInt(100); turn > 0 && !game.isOver(); turn--) {
+			game.go(Direction.values()[random.nextInt(4)], moves);
+			if (!moves.isEmpty()) {
+				game.prepareNextTurn();
+			}
+		}
+		return game;
+	}
+
+	@Nonnull
+	private static Game newRandomGame(@Nonnull Random random, int size, boolean withWalls, @Nonnull Difficulty difficulty) {
+		final byte[] cells = new byte[size * size];
+		for (int i = 0; i < cells.length; i++) {
+			final int r = random.nextInt(10);
+			if (withWalls && r == 0) {
+				cells[i] = Cell.WALL;
+			} else if (r >= 4) {
+				// values up to 2^62 fit into long
+				cells[i] = (byte) (1 + random.nextInt(62));
+			}
+		}
+		if (withWalls) {
+			// walls are not stored separately: a board with no walls is read as a board without walls
+			cells[random.nextInt(cells.length)] = Cell.WALL;
+		}
+		final Score score = Score.newScore(random.nextInt(Integer.MAX_VALUE) * (long) random.nextInt(1000));
+		return Game.newGame(Board.fromCells(size, withWalls, cells), score, new Date(1 + random.nextInt(Integer.MAX_VALUE)), difficulty);
+	}
+}
@@ -0,0 +1,203 @@
+package org.solovyev.android.games.game2048;
+
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MoveJournalTest {
+
+	@Test
+	public void testShouldRestoreEveryTurn() throws Exception {
+		final File dir = newTempDir();
+		final WriteBehind writer = newWriteBehind();
+		final MoveJournal journal = newMoveJournal(dir, writer);
+		assertNull(journal.restore());
+
+		final Random random = new Random(2048);
+		Game game = Game.newGame(4, false, Difficulty.normal, 1);
+		journal.checkpoint(game);
+		for (int turn = 0; turn < 2000; turn++) {
+			if (game.isOver() || random.nextInt(100) == 0) {
+				// restart
+				game = Game.newGame(3 + random.nextInt(4), random.nextBoolean(), Difficulty.values()[random.nextInt(3)], turn);
+				journal.checkpoint(game);
+			} else {
+				play(game, journal, random);
+			}
+			writer.flush();
+			assertTrue(journal.isCheckpointSaved());
+			assertRestored(game, newMoveJournal(dir, newWriteBehind()).restore());
+		}
+		writer.shutdown();
+	}
+
+	@Test
+	public void testShouldCompactFullJournal() throws Exception {
+		final File dir = newTempDir();
+		final WriteBehind writer = newWriteBehind();
+		final MoveJournal journal = newMoveJournal(dir, writer);
+		assertNull(journal.restore());
+
+		// games on big boards last for thousands of turns
+		final Random random = new Random(2048);
+		final Game game = Game.newGame(9, false, Difficulty.easy, 1);
+		journal.checkpoint(game);
+		for (int turn = 0; turn < 20000 && !game.isOver(); turn++) {
+			play(game, journal, random);
+			if (turn % 1000 == 0) {
+				writer.flush();
+				assertRestored(game, newMoveJournal(dir, newWriteBehind()).restore());
+			}
+		}
+		writer.flush();
+		assertRestored(game, newMoveJournal(dir, newWriteBehind()).restore());
+		writer.shutdown();
+	}
+
+	@Test
+	public void testShouldRestorePreviousSnapshotUntilCheckpointIsWritten() throws Exception {
+		final File dir = newTempDir();
+		final WriteBehind writer = newWriteBehind();
+		final MoveJournal journal = newMoveJournal(dir, writer);
+		assertNull(journal.restore());
+
+		final Random random = new Random(2048);
+		final Game game = Game.newGame(4, false, Difficulty.normal, 1);
+		journal.checkpoint(game);
+		for (int turn = 0; turn < 20; turn++) {
+			play(game, journal, random);
+		}
+		writer.flush();
+
+		// the writer is busy: the checkpoint of the new game is not written
+		final CountDownLatch written = block(writer, dir);
+		final Game newGame = Game.newGame(5, true, Difficulty.hard, 2);
+		journal.checkpoint(newGame);
+		assertFalse(journal.isCheckpointSaved());
+		for (int turn = 0; turn < 20; turn++) {
+			play(newGame, journal, random);
+		}
+		assertRestored(game, newMoveJournal(dir, newWriteBehind()).restore());
+
+		written.countDown();
+		writer.flush();
+		assertTrue(journal.isCheckpointSaved());
+		assertRestored(newGame, newMoveJournal(dir, newWriteBehind()).restore());
+		writer.shutdown();
+	}
+
+	@Test
+	public void testShouldKeepJournalOfSnapshotBeingWritten() throws Exception {
+		final File dir = newTempDir();
+		final WriteBehind writer = newWriteBehind();
+		final MoveJournal journal = newMoveJournal(dir, writer);
+		assertNull(journal.restore());
+
+		final Random random = new Random(2048);
+		final Game game = Game.newGame(4, false, Difficulty.normal, 1);
+		journal.checkpoint(game);
+		writer.flush();
+
+		// two checkpoints back to back while the writer is busy
+		final CountDownLatch written = block(writer, dir);
+		final Game first = Game.newGame(5, true, Difficulty.hard, 2);
+		journal.checkpoint(first);
+		final Game firstSnapshot = first.copy();
+		for (int turn = 0; turn < 20; turn++) {
+			play(first, journal, random);
+		}
+		final Game second = Game.newGame(4, true, Difficulty.easy, 3);
+		journal.checkpoint(second);
+		for (int turn = 0; turn < 20; turn++) {
+			play(second, journal, random);
+		}
+
+		// the process dies after the first snapshot is written but before the second one is
+		WriteBehind.writeFile(new File(dir, "game.bin"), GameSnapshot.toBytes(firstSnapshot));
+		assertRestored(first, newMoveJournal(dir, newWriteBehind()).restore());
+
+		written.countDown();
+		writer.flush();
+		assertTrue(journal.isCheckpointSaved());
+		assertRestored(second, newMoveJournal(dir, newWriteBehind()).restore());
+		writer.shutdown();
+	}
+
+	/**
+	 * @return latch which blocks the writer's thread until it is counted down
+	 */
+	@Nonnull
+	private static CountDownLatch block(@Nonnull WriteBehind writer, @Nonnull File dir) {
+		final CountDownLatch written = new CountDownLatch(1);
+		writer.save(new File(dir, "other"), new WriteBehind.Snapshot() {
+			@Nonnull
+			@Override
+			public byte[] toBytes() throws IOException {
+				try {
+					written.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e.getMessage());
+				}
+				return new byte[0];
+			}
+		});
+		return written;
+	}
+
+	private static void play(@Nonnull Game game, @Nonnull MoveJournal journal, @Nonnull Random random) throws IOException {
+		final Moves moves = Moves.newMoves();
+		while (true) {
+			final Direction direction = Direction.values()[random.nextInt(4)];
+			game.go(direction, moves);
+			if (!moves.isEmpty()) {
+				journal.append(game, direction, game.prepareNextTurn());
+				return;
+			}
+		}
+	}
+
+	private static void assertRestored(@Nonnull Game expected, Game actual) {
+		assertNotNull(actual);
+		assertEquals(expected.getBoard().getSize(), actual.getBoard().getSize());
+		assertArrayEquals(expected.getBoard().cells, actual.getBoard().cells);
+		assertEquals(expected.getBoard().getHash(), actual.getBoard().getHash());
+		assertEquals(expected.getScore().getPoints(), actual.getScore().getPoints());
+		assertEquals(expected.getDifficulty(), actual.getDifficulty());
+	}
+
+	@Nonnull
+	private static MoveJournal newMoveJournal(@Nonnull File dir, @Nonnull WriteBehind writer) {
+		return MoveJournal.newMoveJournal(new File(dir, "game.bin"), new File(dir, "game.journal"), writer);
+	}
+
+	@Nonnull
+	private static WriteBehind newWriteBehind() {
+		return WriteBehind.newWriteBehind(new WriteBehind.Listener() {
+			@Override
+			public void onError(@Nonnull File file, @Nonnull Exception e) {
+				fail(file + ": " + e);
+			}
+		});
+	}
+
+	@Nonnull
+	private static File newTempDir() throws IOException {
+		final File dir = File.createTempFile("journal", "");
+		assertTrue(dir.delete());
+		assertTrue(dir.mkdir());
+		dir.deleteOnExit();
+		return dir;
+	}
+}
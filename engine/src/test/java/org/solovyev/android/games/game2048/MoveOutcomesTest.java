@@ -0,0 +1,118 @@
+package org.solovyev.android.games.game2048;
+
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MoveOutcomesTest {
+
+	@Test
+	public void testShouldCommitSameMovesAsGame() throws Exception {
+		final Random random = new Random(2048);
+		final MoveOutcomes outcomes = MoveOutcomes.newMoveOutcomes();
+		final Moves expectedMoves = Moves.newMoves();
+		try {
+			for (int size = 3; size <= 6; size++) {
+				for (int n = 0; n < 20; n++) {
+					final boolean withWalls = n % 2 == 1;
+					final Game game = Game.newGame(size, withWalls, Difficulty.normal, random.nextLong());
+					for (int turn = 0; turn < 50 && !game.isOver(); turn++) {
+						for (Direction direction : Direction.values()) {
+							final Game expected = game.copy();
+							expected.go(direction, expectedMoves);
+
+							final Game actual = game.copy();
+							outcomes.compute(actual).get();
+							assertTrue(outcomes.isComputedFor(actual));
+							final Moves actualMoves = outcomes.commit(actual, direction);
+							assertNotNull(actualMoves);
+
+							final String message = Arrays.toString(game.getBoard().cells) + " " + direction;
+							assertSameGame(message, expected, actual);
+							assertSameMoves(message, expectedMoves, actualMoves);
+							// the board of the game is not changed by the next computation
+							outcomes.compute(expected).get();
+							assertSameGame(message, expected, actual);
+							// random source of the game is kept
+							if (!expectedMoves.isEmpty()) {
+								expected.prepareNextTurn();
+								actual.prepareNextTurn();
+								assertSameGame(message, expected, actual);
+							}
+						}
+						playRandomTurn(game, random);
+					}
+				}
+			}
+		} finally {
+			outcomes.shutdown();
+		}
+	}
+
+	@Test
+	public void testShouldNotCommitOutcomesOfOtherPositions() throws Exception {
+		final MoveOutcomes outcomes = MoveOutcomes.newMoveOutcomes();
+		try {
+			final Game game = Game.newGame(4, true, Difficulty.normal, 1);
+			assertNull(outcomes.commit(game, Direction.left));
+
+			outcomes.compute(game).get();
+			final Game other = game.copy();
+			playRandomTurn(other, new Random(2048));
+			assertFalse(outcomes.isComputedFor(other));
+			assertNull(outcomes.commit(other, Direction.left));
+
+			// illegal moves don't use up the outcomes
+			for (Direction direction : Direction.values()) {
+				final Moves moves = outcomes.commit(game, direction);
+				assertNotNull(moves);
+				if (!moves.isEmpty()) {
+					assertFalse(outcomes.isComputedFor(game));
+					break;
+				}
+			}
+			assertNull(outcomes.commit(game, Direction.left));
+		} finally {
+			outcomes.shutdown();
+		}
+	}
+
+	private static void assertSameGame(@Nonnull String message, @Nonnull Game expected, @Nonnull Game actual) {
+		final Board expectedBoard = expected.getBoard();
+		final Board actualBoard = actual.getBoard();
+		assertArrayEquals(message, expectedBoard.cells, actualBoard.cells);
+		assertEquals(message, expectedBoard.getHash(), actualBoard.getHash());
+		assertEquals(message, expectedBoard.getEmptyCount(), actualBoard.getEmptyCount());
+		assertEquals(message, expectedBoard.withWalls, actualBoard.withWalls);
+		assertEquals(message, expected.isOver(), actual.isOver());
+		assertEquals(message, expected.getScore().getPoints(), actual.getScore().getPoints());
+	}
+
+	private static void assertSameMoves(@Nonnull String message, @Nonnull Moves expected, @Nonnull Moves actual) {
+		assertEquals(message, expected.size(), actual.size());
+		assertEquals(message, expected.getPoints(), actual.getPoints());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(message, expected.getFrom(i), actual.getFrom(i));
+			assertEquals(message, expected.getTo(i), actual.getTo(i));
+			assertEquals(message, expected.getExponent(i), actual.getExponent(i));
+			assertEquals(message, expected.isMerge(i), actual.isMerge(i));
+		}
+	}
+
+	private static void playRandomTurn(@Nonnull Game game, @Nonnull Random random) {
+		final Moves moves = Moves.newMoves();
+		do {
+			game.go(Direction.values()[random.nextInt(4)], moves);
+		} while (moves.isEmpty());
+		game.prepareNextTurn();
+	}
+}
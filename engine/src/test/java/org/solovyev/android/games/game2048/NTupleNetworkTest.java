@@ -0,0 +1,87 @@
+package org.solovyev.android.games.game2048;
+
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NTupleNetworkTest {
+
+	@Test
+	public void testShouldEvaluateSameAfterWriteAndMap() throws Exception {
+		final Random random = new Random(2048);
+		final List<Board> boards = new ArrayList<Board>();
+		for (int size = 3; size <= 6; size++) {
+			for (int n = 0; n < 50; n++) {
+				boards.add(newRandomBoard(random, size, n % 2 == 1));
+			}
+		}
+
+		final NTupleNetwork network = NTupleNetwork.newNTupleNetwork();
+		for (int i = 0; i < 10000; i++) {
+			network.update(boards.get(random.nextInt(boards.size())), random.nextGaussian() * 1000);
+		}
+
+		final File file = File.createTempFile("weights", ".bin");
+		try {
+			network.write(file);
+			final NTupleNetwork mapped = NTupleNetwork.map(file);
+			for (Board board : boards) {
+				final String message = Arrays.toString(board.cells);
+				assertTrue(message, network.getValue(board) != 0);
+				assertEquals(message, network.getValue(board), mapped.getValue(board), 0);
+				assertEquals(message, network.evaluate(board), mapped.evaluate(board), 0);
+			}
+		} finally {
+			// mapped files can't be deleted on some platforms
+			file.deleteOnExit();
+		}
+	}
+
+	@Test
+	public void testShouldRejectTruncatedFiles() throws Exception {
+		final File file = File.createTempFile("weights", ".bin");
+		try {
+			NTupleNetwork.newNTupleNetwork().write(file);
+			final RandomAccessFile f = new RandomAccessFile(file, "rw");
+			try {
+				f.setLength(f.length() - 4);
+			} finally {
+				f.close();
+			}
+			try {
+				NTupleNetwork.map(file);
+				fail();
+			} catch (IOException e) {
+				assertEquals("Not a weight file of version 1", e.getMessage());
+			}
+		} finally {
+			assertTrue(file.delete());
+		}
+	}
+
+	@Nonnull
+	private static Board newRandomBoard(@Nonnull Random random, int size, boolean withWalls) {
+		final byte[] cells = new byte[size * size];
+		for (int i = 0; i < cells.length; i++) {
+			final int r = random.nextInt(10);
+			if (withWalls && r == 0) {
+				cells[i] = Cell.WALL;
+			} else if (r >= 4) {
+				// exponents above 14 share weights with 14
+				cells[i] = (byte) (1 + random.nextInt(17));
+			}
+		}
+		return Board.fromCells(size, withWalls, cells);
+	}
+}
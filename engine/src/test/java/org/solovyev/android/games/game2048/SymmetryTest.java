@@ -0,0 +1,130 @@
+package org.solovyev.android.games.game2048;
+
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class SymmetryTest {
+
+	private static final int[] SIZES = {3, 4, 5, 6};
+
+	@Test
+	public void testShouldCommuteWithMoves() throws Exception {
+		final Random random = new Random(2048);
+		final Moves moves = Moves.newMoves();
+		final Moves transformedMoves = Moves.newMoves();
+		for (int size : SIZES) {
+			for (int n = 0; n < 500; n++) {
+				final boolean withWalls = n % 2 == 1;
+				final byte[] cells = newRandomCells(random, size, withWalls);
+				for (Symmetry symmetry : Symmetry.values()) {
+					for (Direction direction : Direction.values()) {
+						final Board board = Board.fromCells(size, withWalls, cells);
+						Game.newGame(board, Difficulty.normal).go(direction, moves);
+
+						final Board transformed = Board.fromCells(size, withWalls, transform(cells, size, symmetry));
+						Game.newGame(transformed, Difficulty.normal).go(symmetry.apply(direction), transformedMoves);
+
+						final String message = Arrays.toString(cells) + " " + symmetry + " " + direction;
+						assertArrayEquals(message, transform(board.cells, size, symmetry), transformed.cells);
+						assertEquals(message, transform(board, symmetry).getHash(), transformed.getHash());
+						assertEquals(message, moves.size(), transformedMoves.size());
+						assertEquals(message, moves.getPoints(), transformedMoves.getPoints());
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testShouldInvertDirections() throws Exception {
+		for (Symmetry symmetry : Symmetry.values()) {
+			assertSame(symmetry, symmetry.inverse().inverse());
+			for (Direction direction : Direction.values()) {
+				assertSame(symmetry + " " + direction, direction, symmetry.inverse().apply(symmetry.apply(direction)));
+				assertSame(symmetry + " " + direction, direction, symmetry.apply(symmetry.inverse().apply(direction)));
+			}
+			for (int size : SIZES) {
+				for (int i = 0; i < size * size; i++) {
+					assertEquals(symmetry + " " + i, i, symmetry.inverse().apply(symmetry.apply(i, size), size));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testShouldPackTransformedBoards() throws Exception {
+		final Random random = new Random(2048);
+		for (int n = 0; n < 1000; n++) {
+			final byte[] cells = newRandomCells(random, BitBoard.SIZE, false);
+			for (Symmetry symmetry : Symmetry.values()) {
+				assertEquals(symmetry + " " + Arrays.toString(cells), BitBoard.pack(transform(cells, BitBoard.SIZE, symmetry)), symmetry.apply(BitBoard.pack(cells)));
+			}
+		}
+	}
+
+	@Test
+	public void testShouldHaveSameCanonicalPositionForSymmetricBoards() throws Exception {
+		final Random random = new Random(2048);
+		final CanonicalPosition position = CanonicalPosition.newCanonicalPosition();
+		final CanonicalPosition transformedPosition = CanonicalPosition.newCanonicalPosition();
+		for (int size : SIZES) {
+			for (int n = 0; n < 200; n++) {
+				final boolean withWalls = n % 2 == 1;
+				final Board board = Board.fromCells(size, withWalls, newRandomCells(random, size, withWalls));
+				position.of(board);
+
+				final Board canonical = transform(board, position.getSymmetry());
+				if (BitBoard.isSupported(canonical)) {
+					assertEquals(BitBoard.pack(canonical.cells), position.getKey());
+				} else {
+					assertEquals(canonical.getHash(), position.getKey());
+				}
+				for (Direction direction : Direction.values()) {
+					assertSame(direction, position.fromCanonical(position.toCanonical(direction)));
+				}
+
+				for (Symmetry symmetry : Symmetry.values()) {
+					transformedPosition.of(transform(board, symmetry));
+					assertEquals(symmetry + " " + Arrays.toString(board.cells), position.getKey(), transformedPosition.getKey());
+				}
+			}
+		}
+	}
+
+	@Nonnull
+	private static Board transform(@Nonnull Board board, @Nonnull Symmetry symmetry) {
+		return Board.fromCells(board.size, board.withWalls, transform(board.cells, board.size, symmetry));
+	}
+
+	@Nonnull
+	private static byte[] transform(@Nonnull byte[] cells, int size, @Nonnull Symmetry symmetry) {
+		final byte[] result = new byte[cells.length];
+		for (int i = 0; i < cells.length; i++) {
+			result[symmetry.apply(i, size)] = cells[i];
+		}
+		return result;
+	}
+
+	@Nonnull
+	private static byte[] newRandomCells(@Nonnull Random random, int size, boolean withWalls) {
+		final byte[] cells = new byte[size * size];
+		for (int i = 0; i < cells.length; i++) {
+			final int r = random.nextInt(10);
+			if (withWalls && r == 0) {
+				cells[i] = Cell.WALL;
+			} else if (r < 4) {
+				cells[i] = Cell.NO_VALUE;
+			} else {
+				cells[i] = (byte) (1 + random.nextInt(random.nextBoolean() ? 3 : 13));
+			}
+		}
+		return cells;
+	}
+}
@@ -0,0 +1,36 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Settings of the games played by the {@link Simulator}
+ */
+public final class Configuration {
+
+	final int size;
+	final boolean withWalls;
+
+	@Nonnull
+	final Difficulty difficulty;
+
+	private Configuration(int size, boolean withWalls, @Nonnull Difficulty difficulty) {
+		this.size = size;
+		this.withWalls = withWalls;
+		this.difficulty = difficulty;
+	}
+
+	@Nonnull
+	public static Configuration newConfiguration(int size, boolean withWalls, @Nonnull Difficulty difficulty) {
+		return new Configuration(size, withWalls, difficulty);
+	}
+
+	@Nonnull
+	Game newGame(@Nonnull RandomSource random) {
+		return Game.newGame(size, withWalls, difficulty, random);
+	}
+
+	@Override
+	public String toString() {
+		return "size=" + size + ", walls=" + withWalls + ", difficulty=" + difficulty;
+	}
+}
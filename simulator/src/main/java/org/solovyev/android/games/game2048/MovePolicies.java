@@ -0,0 +1,78 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+
+public final class MovePolicies {
+
+	private static final Direction[] directions = Direction.values();
+
+	// directions in order of preference of the "corner" strategy: tiles are kept in the bottom left corner
+	private static final Direction[] cornerDirections = {Direction.down, Direction.left, Direction.right, Direction.up};
+
+	@Nonnull
+	private static final MovePolicy.Factory random = new MovePolicy.Factory() {
+		@Nonnull
+		@Override
+		public MovePolicy newPolicy(@Nonnull RandomSource random) {
+			return new RandomPolicy(random);
+		}
+	};
+
+	@Nonnull
+	private static final MovePolicy.Factory corner = new MovePolicy.Factory() {
+		@Nonnull
+		@Override
+		public MovePolicy newPolicy(@Nonnull RandomSource random) {
+			return new CornerPolicy();
+		}
+	};
+
+	private MovePolicies() {
+		throw new AssertionError();
+	}
+
+	@Nonnull
+	public static MovePolicy.Factory random() {
+		return random;
+	}
+
+	@Nonnull
+	public static MovePolicy.Factory corner() {
+		return corner;
+	}
+
+	@Nonnull
+	public static MovePolicy.Factory valueOf(@Nonnull String name) {
+		if (name.equals("random")) {
+			return random;
+		} else if (name.equals("corner")) {
+			return corner;
+		}
+		throw new IllegalArgumentException("Unknown policy: " + name);
+	}
+
+	private static final class RandomPolicy implements MovePolicy {
+
+		@Nonnull
+		private final RandomSource random;
+
+		private RandomPolicy(@Nonnull RandomSource random) {
+			this.random = random;
+		}
+
+		@Nonnull
+		@Override
+		public Direction getDirection(@Nonnull Game game, int attempt) {
+			return directions[random.nextInt(directions.length)];
+		}
+	}
+
+	private static final class CornerPolicy implements MovePolicy {
+
+		@Nonnull
+		@Override
+		public Direction getDirection(@Nonnull Game game, int attempt) {
+			return cornerDirections[attempt % cornerDirections.length];
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Chooses moves for the {@link Simulator}. Policies are used by one thread only, each worker gets its own instance
+ * from {@link Factory}.
+ */
+public interface MovePolicy {
+
+	/**
+	 * @param attempt number of directions already returned for the current turn which didn't change the board
+	 * @return direction of the next move
+	 */
+	@Nonnull
+	Direction getDirection(@Nonnull Game game, int attempt);
+
+	interface Factory {
+		@Nonnull
+		MovePolicy newPolicy(@Nonnull RandomSource random);
+	}
+}
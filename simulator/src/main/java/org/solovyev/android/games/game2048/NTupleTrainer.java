@@ -0,0 +1,183 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.solovyev.android.games.game2048.Configuration.newConfiguration;
+
+/**
+ * Trains {@link NTupleNetwork} by TD(0) learning of afterstate values: every turn a worker makes the move maximizing
+ * points of the move plus value of the position after it and moves the value of the previous afterstate towards
+ * that. New cells are added by {@link Game#prepareNextTurn()}, i.e. exactly as in the app (walls included). Workers
+ * update one network on all cores without locking, so unlike {@link Simulator} results are not reproducible.
+ */
+public final class NTupleTrainer {
+
+	@Nonnull
+	private static final Direction[] directions = Direction.values();
+
+	@Nonnull
+	private final ExecutorService executor;
+
+	private final int threads;
+
+	private NTupleTrainer(int threads) {
+		this.threads = threads;
+		this.executor = Executors.newFixedThreadPool(threads);
+	}
+
+	@Nonnull
+	public static NTupleTrainer newNTupleTrainer(int threads) {
+		return new NTupleTrainer(threads);
+	}
+
+	/**
+	 * Plays <var>games</var> games learning <var>network</var> with <var>learningRate</var>
+	 *
+	 * @return stats of the games played
+	 */
+	@Nonnull
+	public Stats train(@Nonnull NTupleNetwork network, @Nonnull Configuration configuration, double learningRate, long games, @Nonnull RandomSource random) throws InterruptedException {
+		final List<Future<Stats>> futures = new ArrayList<Future<Stats>>(threads);
+
+		final long start = System.nanoTime();
+		for (int i = 0; i < threads; i++) {
+			final long workerGames = games / threads + (i < games % threads ? 1 : 0);
+			futures.add(executor.submit(new Worker(network, configuration, learningRate, random.split(), workerGames)));
+		}
+
+		final Stats stats = Stats.newStats();
+		for (Future<Stats> future : futures) {
+			try {
+				stats.merge(future.get());
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+		stats.setNanos(System.nanoTime() - start);
+		return stats;
+	}
+
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	private static final class Worker implements Callable<Stats> {
+
+		@Nonnull
+		private final NTupleNetwork network;
+
+		@Nonnull
+		private final Configuration configuration;
+
+		private final double learningRate;
+
+		@Nonnull
+		private final RandomSource random;
+
+		private final long games;
+
+		@Nonnull
+		private final Moves moves = Moves.newMoves();
+
+		private Worker(@Nonnull NTupleNetwork network, @Nonnull Configuration configuration, double learningRate, @Nonnull RandomSource random, long games) {
+			this.network = network;
+			this.configuration = configuration;
+			this.learningRate = learningRate;
+			this.random = random;
+			this.games = games;
+		}
+
+		@Override
+		public Stats call() {
+			final Stats stats = Stats.newStats();
+			for (long i = 0; i < games; i++) {
+				final Game game = configuration.newGame(random.split());
+				stats.onGameOver(game, play(game));
+			}
+			return stats;
+		}
+
+		private long play(@Nonnull Game game) {
+			final Board board = game.getBoard();
+			final Game afterMove = Game.newGame(board.copy(), configuration.difficulty);
+			final Board previous = board.copy();
+			boolean hasPrevious = false;
+
+			long turns = 0;
+			while (!game.isOver()) {
+				Direction best = null;
+				double bestValue = 0;
+				for (Direction direction : directions) {
+					afterMove.getBoard().copyFrom(board);
+					afterMove.go(direction, moves);
+					if (!moves.isEmpty()) {
+						final double value = moves.getPoints() + network.getValue(afterMove.getBoard());
+						if (best == null || value > bestValue) {
+							best = direction;
+							bestValue = value;
+						}
+					}
+				}
+				// the game is not over => there is a move
+				assert best != null;
+
+				if (hasPrevious) {
+					network.update(previous, learningRate * (bestValue - network.getValue(previous)));
+				}
+				game.go(best, moves);
+				previous.copyFrom(board);
+				hasPrevious = true;
+
+				game.prepareNextTurn();
+				turns++;
+			}
+
+			if (hasPrevious) {
+				// nothing follows the last afterstate
+				network.update(previous, -learningRate * network.getValue(previous));
+			}
+			return turns;
+		}
+	}
+
+	/**
+	 * Usage: <code>java -cp simulator.jar org.solovyev.android.games.game2048.NTupleTrainer [games] [size] [walls]
+	 * [difficulty] [output file] [threads] [learning rate] [seed]</code>
+	 */
+	public static void main(String[] args) throws InterruptedException, IOException {
+		final long games = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+		final int size = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		final boolean withWalls = args.length > 2 && Boolean.parseBoolean(args[2]);
+		final Difficulty difficulty = Difficulty.valueOf(args.length > 3 ? args[3] : "normal");
+		final File output = new File(args.length > 4 ? args[4] : "ntuple-" + size + (withWalls ? "-walls" : "") + "-" + difficulty + ".bin");
+		final int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+		final double learningRate = args.length > 6 ? Double.parseDouble(args[6]) : 0.1;
+		final long seed = args.length > 7 ? Long.parseLong(args[7]) : System.nanoTime();
+
+		final Configuration configuration = newConfiguration(size, withWalls, difficulty);
+		final NTupleNetwork network = NTupleNetwork.newNTupleNetwork();
+		final RandomSource random = RandomSources.newRandomSource(seed);
+		final NTupleTrainer trainer = newNTupleTrainer(threads);
+		try {
+			// progress is reported and weights are saved every 1% of the games
+			final long round = Math.max(1, games / 100);
+			for (long played = 0; played < games; played += round) {
+				final Stats stats = trainer.train(network, configuration, learningRate, Math.min(round, games - played), random);
+				network.write(output);
+				System.out.println(configuration + ", threads=" + threads + ", games=" + (played + stats.getGames()));
+				System.out.println(stats);
+			}
+		} finally {
+			trainer.shutdown();
+		}
+	}
+}
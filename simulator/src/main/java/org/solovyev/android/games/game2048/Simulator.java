@@ -0,0 +1,133 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.solovyev.android.games.game2048.Configuration.newConfiguration;
+
+/**
+ * Plays complete games on all cores. Workers share nothing but the configuration: each of them has its own games,
+ * move policy, random source and {@link Stats} which are merged after all the games are played. Results are
+ * reproducible for the same seed and number of threads.
+ */
+public final class Simulator {
+
+	@Nonnull
+	private final ExecutorService executor;
+
+	private final int threads;
+
+	private Simulator(int threads) {
+		this.threads = threads;
+		this.executor = Executors.newFixedThreadPool(threads);
+	}
+
+	@Nonnull
+	public static Simulator newSimulator(int threads) {
+		return new Simulator(threads);
+	}
+
+	@Nonnull
+	public Stats simulate(@Nonnull Configuration configuration, @Nonnull MovePolicy.Factory policies, long games, long seed) throws InterruptedException {
+		final RandomSource random = RandomSources.newRandomSource(seed);
+		final List<Future<Stats>> futures = new ArrayList<Future<Stats>>(threads);
+
+		final long start = System.nanoTime();
+		for (int i = 0; i < threads; i++) {
+			// remaining games are distributed among the first workers
+			final long workerGames = games / threads + (i < games % threads ? 1 : 0);
+			futures.add(executor.submit(new Worker(configuration, policies, random.split(), workerGames)));
+		}
+
+		final Stats stats = Stats.newStats();
+		for (Future<Stats> future : futures) {
+			try {
+				stats.merge(future.get());
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+		stats.setNanos(System.nanoTime() - start);
+		return stats;
+	}
+
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	private static final class Worker implements Callable<Stats> {
+
+		@Nonnull
+		private final Configuration configuration;
+
+		@Nonnull
+		private final MovePolicy policy;
+
+		@Nonnull
+		private final RandomSource random;
+
+		private final long games;
+
+		private Worker(@Nonnull Configuration configuration, @Nonnull MovePolicy.Factory policies, @Nonnull RandomSource random, long games) {
+			this.configuration = configuration;
+			this.policy = policies.newPolicy(random.split());
+			this.random = random;
+			this.games = games;
+		}
+
+		@Override
+		public Stats call() {
+			final Stats stats = Stats.newStats();
+			final Moves moves = Moves.newMoves();
+			for (long i = 0; i < games; i++) {
+				final Game game = configuration.newGame(random.split());
+				long turns = 0;
+				while (!game.isOver()) {
+					// the game is not over => at least one direction changes the board
+					int attempt = 0;
+					do {
+						game.go(policy.getDirection(game, attempt), moves);
+						attempt++;
+					} while (moves.isEmpty());
+					game.prepareNextTurn();
+					turns++;
+				}
+				stats.onGameOver(game, turns);
+			}
+			return stats;
+		}
+	}
+
+	/**
+	 * Usage: <code>java -jar simulator.jar [games per configuration] [random|corner] [threads] [sizes, e.g. 4,5,6] [seed]</code>
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		final long games = args.length > 0 ? Long.parseLong(args[0]) : 1000000;
+		final MovePolicy.Factory policies = MovePolicies.valueOf(args.length > 1 ? args[1] : "random");
+		final int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		final String[] sizes = (args.length > 3 ? args[3] : "4,5,6,7,8,9").split(",");
+		final long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+
+		final Simulator simulator = newSimulator(threads);
+		try {
+			for (String size : sizes) {
+				for (Difficulty difficulty : Difficulty.values()) {
+					for (boolean withWalls : new boolean[]{false, true}) {
+						final Configuration configuration = newConfiguration(Integer.parseInt(size.trim()), withWalls, difficulty);
+						final Stats stats = simulator.simulate(configuration, policies, games, seed);
+						System.out.println(configuration + ", threads=" + threads);
+						System.out.println(stats);
+					}
+				}
+			}
+		} finally {
+			simulator.shutdown();
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package org.solovyev.android.games.game2048;
+
+import javax.annotation.Nonnull;
+import java.util.Locale;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Results of simulated games. Each worker collects its own stats which are merged when all workers are done.
+ */
+public final class Stats {
+
+	// exponents of 2 never exceed byte range and scores never exceed long range
+	private static final int BUCKETS = 64;
+
+	private long games;
+	private long moves;
+	private long totalScore;
+	private long minScore = Long.MAX_VALUE;
+	private long maxScore;
+
+	// number of games by the exponent of their max tile
+	@Nonnull
+	private final long[] maxTiles = new long[BUCKETS];
+
+	// number of games by floor(log2(score)), games with no points are counted in the first bucket
+	@Nonnull
+	private final long[] scores = new long[BUCKETS];
+
+	private long nanos;
+
+	private Stats() {
+	}
+
+	@Nonnull
+	static Stats newStats() {
+		return new Stats();
+	}
+
+	void onGameOver(@Nonnull Game game, long moves) {
+		final long score = game.getScore().getPoints();
+		this.games++;
+		this.moves += moves;
+		this.totalScore += score;
+		this.minScore = min(minScore, score);
+		this.maxScore = max(maxScore, score);
+		this.scores[score == 0 ? 0 : 63 - Long.numberOfLeadingZeros(score)]++;
+		this.maxTiles[getMaxExponent(game.getBoard())]++;
+	}
+
+	private static int getMaxExponent(@Nonnull Board board) {
+		int maxExponent = 0;
+		for (byte cell : board.cells) {
+			maxExponent = max(maxExponent, cell);
+		}
+		return maxExponent;
+	}
+
+	void setNanos(long nanos) {
+		this.nanos = nanos;
+	}
+
+	void merge(@Nonnull Stats that) {
+		games += that.games;
+		moves += that.moves;
+		totalScore += that.totalScore;
+		minScore = min(minScore, that.minScore);
+		maxScore = max(maxScore, that.maxScore);
+		for (int i = 0; i < BUCKETS; i++) {
+			maxTiles[i] += that.maxTiles[i];
+			scores[i] += that.scores[i];
+		}
+	}
+
+	public long getGames() {
+		return games;
+	}
+
+	public long getMoves() {
+		return moves;
+	}
+
+	public double getGamesPerSecond() {
+		return nanos == 0 ? 0 : games * 1e9 / nanos;
+	}
+
+	public double getMovesPerSecond() {
+		return nanos == 0 ? 0 : moves * 1e9 / nanos;
+	}
+
+	public double getAverageScore() {
+		return games == 0 ? 0 : (double) totalScore / games;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.US, "games: %d, moves: %d, %.0f games/s, %.0f moves/s%n", games, moves, getGamesPerSecond(), getMovesPerSecond()));
+		sb.append(String.format(Locale.US, "score: avg %.1f, min %d, max %d%n", getAverageScore(), games == 0 ? 0 : minScore, maxScore));
+		sb.append("score distribution:\n");
+		for (int i = 0; i < BUCKETS; i++) {
+			if (scores[i] > 0) {
+				final long from = i == 0 ? 0 : 1L << i;
+				sb.append(String.format(Locale.US, "  [%d, %d): %d (%.2f%%)%n", from, 1L << (i + 1), scores[i], 100. * scores[i] / games));
+			}
+		}
+		sb.append("max tile distribution:\n");
+		for (int i = 0; i < BUCKETS; i++) {
+			if (maxTiles[i] > 0) {
+				sb.append(String.format(Locale.US, "  %d: %d (%.2f%%)%n", Cell.toValue((byte) i), maxTiles[i], 100. * maxTiles[i] / games));
+			}
+		}
+		return sb.toString();
+	}
+}